@@ -0,0 +1,515 @@
+package tbs.client;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import tbs.server.AsyncTBSServerImpl;
+import tbs.server.HeapSeatStore;
+import tbs.server.OffHeapSeatStore;
+import tbs.server.SeatStore;
+import tbs.server.TBSNetworkServer;
+import tbs.server.TBSServer;
+import tbs.server.TBSServerImpl;
+
+/**
+ * Rough timings for the server's hot paths. These are not precise micro-benchmarks, they are meant to show how the
+ * cost of an operation grows with the size of the input.
+ */
+public class Benchmark
+{
+    private static final int WARM_UP_ROUNDS = 20;
+    private static final int MEASURED_ROUNDS = 50;
+    private static final LocalDateTime FIRST_START_TIME = LocalDateTime.of(2018, 4, 3, 16, 0);
+
+    public static void main(String[] args) throws Exception
+    {
+        schedulePerformance(new int[] {10, 21, 50, 100, 200});
+        addArtist(new int[] {1000, 10000, 100000});
+        initialise(new int[] {10000, 100000, 1000000});
+        initialiseFiles(1000000, new int[] {1, 2, 4, 8});
+        issueTicket(new int[] {1, 4, 16, 64});
+        journaledIssueTicket(new int[] {1, 4, 16, 64});
+        asyncIssueTicket(10000, new int[] {16, 64, 256});
+        networkIssueTicket(250000, new int[] {1, 16, 256, 2048});
+        restart(400, 50);
+        seatStoreHeapUse(20000, 100);
+    }
+
+    /**
+     * Times adding a growing number of artists to an empty server, as when artists are onboarded in bulk.
+     * @param artistCounts The numbers of artists to add.
+     */
+    private static void addArtist(int[] artistCounts)
+    {
+        System.out.println("addArtist time by number of artists");
+        for (int artistCount : artistCounts)
+        {
+            TBSServer server = new TBSServerImpl();
+            long start = System.nanoTime();
+            for (int i = 0; i < artistCount; i++)
+            {
+                server.addArtist("Artist " + i);
+            }
+            long millis = (System.nanoTime() - start) / 1000000;
+            System.out.println("\t" + artistCount + " artists: " + millis + " ms, "
+                    + server.getArtistNames().size() + " names listed");
+        }
+        System.out.println();
+    }
+
+    /**
+     * Times initialise on theatre files of growing length.
+     * @param lineCounts The number of theatres in each file.
+     */
+    private static void initialise(int[] lineCounts) throws IOException
+    {
+        System.out.println("initialise time by number of theatres");
+        for (int lineCount : lineCounts)
+        {
+            Path file = Files.createTempFile("theatres", ".csv");
+            file.toFile().deleteOnExit();
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8))
+            {
+                for (int i = 0; i < lineCount; i++)
+                {
+                    writer.write("THEATRE\tV" + i + "\t" + (10 + i % 90) + "\t" + (100 + i % 5000) + "\n");
+                }
+            }
+
+            TBSServer server = new TBSServerImpl();
+            long start = System.nanoTime();
+            String result = server.initialise(file.toString());
+            long millis = (System.nanoTime() - start) / 1000000;
+            System.out.println("\t" + lineCount + " lines (" + Files.size(file) / 1024 + " KB): " + millis + " ms"
+                    + (result.isEmpty() ? "" : " " + result));
+            Files.delete(file);
+        }
+        System.out.println();
+    }
+
+    /**
+     * Times initialise on the same number of theatres split across a growing number of files, which are parsed in
+     * parallel.
+     * @param lineCount The total number of theatres.
+     * @param fileCounts The number of files to split the theatres across.
+     */
+    private static void initialiseFiles(int lineCount, int[] fileCounts) throws IOException
+    {
+        System.out.println("initialise time for " + lineCount + " theatres by number of files");
+        for (int fileCount : fileCounts)
+        {
+            Path directory = Files.createTempDirectory("theatres");
+            for (int f = 0; f < fileCount; f++)
+            {
+                Path file = directory.resolve("theatres" + f + ".csv");
+                try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8))
+                {
+                    for (int i = f; i < lineCount; i += fileCount)
+                    {
+                        writer.write("THEATRE\tV" + i + "\t" + (10 + i % 90) + "\t" + (100 + i % 5000) + "\n");
+                    }
+                }
+            }
+
+            TBSServer server = new TBSServerImpl();
+            long start = System.nanoTime();
+            String result = server.initialise(Collections.singletonList(directory.toString()));
+            long millis = (System.nanoTime() - start) / 1000000;
+            System.out.println("\t" + fileCount + " files: " + millis + " ms" + (result.isEmpty() ? "" : " " + result));
+
+            for (int f = 0; f < fileCount; f++)
+            {
+                Files.delete(directory.resolve("theatres" + f + ".csv"));
+            }
+            Files.delete(directory);
+        }
+        System.out.println();
+    }
+
+    /**
+     * Times issueTicket on a server that keeps no journal, with a growing number of buyers. Nothing is shared between
+     * sales but the words of seats they land in, so this is the figure the journaled sales are measured against.
+     * @param threadCounts The numbers of buyers to measure.
+     */
+    private static void issueTicket(int[] threadCounts) throws Exception
+    {
+        final int dimension = 200;
+        System.out.println("issueTicket throughput without a journal by number of buyers");
+        TBSServerImpl server = new TBSServerImpl();
+        server.initialise(writeTheatreFile(new int[] {dimension}).toString());
+        String actID = server.addAct("Benchmark Act", server.addArtist("Benchmark Artist"), 90);
+        int day = 0;
+        for (int threadCount : threadCounts)
+        {
+            //sell out untimed performances first, so the timed one runs compiled code as a long-lived server would
+            for (int i = 0; i < WARM_UP_ROUNDS; i++)
+            {
+                String perfID = server.schedulePerformance(actID, "B" + dimension, startTime(day++), "$20", "$10");
+                sellEverySeat(server, perfID, dimension, threadCount, null);
+            }
+            String perfID = server.schedulePerformance(actID, "B" + dimension, startTime(day++), "$20", "$10");
+            sellEverySeat(server, perfID, dimension, threadCount, threadCount + " buyers");
+        }
+        server.close();
+        System.out.println();
+    }
+
+    /**
+     * Times issueTicket on a server that keeps a journal, with a growing number of buyers. Each sale waits for its
+     * record to reach the disk, but buyers waiting at the same time share a single write.
+     * @param threadCounts The numbers of buyers to measure.
+     */
+    private static void journaledIssueTicket(int[] threadCounts) throws Exception
+    {
+        final int dimension = 60;
+        System.out.println("journaled issueTicket throughput by number of buyers");
+        for (int threadCount : threadCounts)
+        {
+            Path journal = Files.createTempFile("journal", ".tbs");
+            Files.delete(journal);
+            TBSServerImpl server = new TBSServerImpl(journal.toString());
+            server.initialise(writeTheatreFile(new int[] {dimension}).toString());
+            String actID = server.addAct("Benchmark Act", server.addArtist("Benchmark Artist"), 90);
+            String perfID = server.schedulePerformance(actID, "B" + dimension, startTime(0), "$20", "$10");
+            sellEverySeat(server, perfID, dimension, threadCount, threadCount + " buyers");
+            server.close();
+            Files.delete(journal);
+        }
+        System.out.println();
+    }
+
+    /**
+     * Times many clients each buying one ticket at once from a server that keeps a journal, first with a blocking call
+     * on a thread per client, then through the asynchronous server with growing pools of threads.
+     * @param clientCount The number of clients, which is also the number of seats.
+     * @param poolSizes The numbers of threads the asynchronous server carries out requests on.
+     */
+    private static void asyncIssueTicket(int clientCount, int[] poolSizes) throws Exception
+    {
+        final int dimension = (int) Math.ceil(Math.sqrt(clientCount));
+        System.out.println("issueTicket throughput for " + clientCount + " concurrent clients");
+
+        Path journal = Files.createTempFile("journal", ".tbs");
+        Files.delete(journal);
+        TBSServerImpl server = new TBSServerImpl(journal.toString());
+        String perfID = scheduleBenchmarkPerformance(server, dimension);
+        List<Thread> clients = new ArrayList<Thread>();
+        for (int c = 0; c < clientCount; c++)
+        {
+            final int seat = c;
+            clients.add(new Thread(() -> server.issueTicket(perfID, seat / dimension + 1, seat % dimension + 1)));
+        }
+
+        long start = System.nanoTime();
+        for (Thread client : clients)
+        {
+            client.start();
+        }
+        for (Thread client : clients)
+        {
+            client.join();
+        }
+        printThroughput("blocking, a thread per client", clientCount, start);
+        server.close();
+        Files.delete(journal);
+
+        for (int poolSize : poolSizes)
+        {
+            TBSServerImpl journaledServer = new TBSServerImpl(journal.toString());
+            String asyncPerfID = scheduleBenchmarkPerformance(journaledServer, dimension);
+            AsyncTBSServerImpl asyncServer = new AsyncTBSServerImpl(journaledServer, poolSize);
+
+            start = System.nanoTime();
+            List<CompletableFuture<String>> tickets = new ArrayList<CompletableFuture<String>>();
+            for (int seat = 0; seat < clientCount; seat++)
+            {
+                tickets.add(asyncServer.issueTicketAsync(asyncPerfID, seat / dimension + 1, seat % dimension + 1));
+            }
+            CompletableFuture.allOf(tickets.toArray(new CompletableFuture<?>[0])).join();
+            printThroughput("async, " + poolSize + " threads", clientCount, start);
+
+            asyncServer.close();
+            journaledServer.close();
+            Files.delete(journal);
+        }
+        System.out.println();
+    }
+
+    /**
+     * Times selling every seat of a performance through a network server on the loopback address, with the requests
+     * spread over a growing number of connections. Each connection sends all of its requests before reading any
+     * response.
+     * @param ticketCount The number of tickets to sell.
+     * @param connectionCounts The numbers of connections to measure.
+     */
+    private static void networkIssueTicket(int ticketCount, int[] connectionCounts) throws Exception
+    {
+        final int dimension = (int) Math.ceil(Math.sqrt(ticketCount));
+        System.out.println("pipelined issueTicket throughput over loopback by number of connections");
+        for (int connectionCount : connectionCounts)
+        {
+            TBSServerImpl server = new TBSServerImpl();
+            String perfID = scheduleBenchmarkPerformance(server, dimension);
+            TBSNetworkServer networkServer = new TBSNetworkServer(server,
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 64);
+            String host = InetAddress.getLoopbackAddress().getHostAddress();
+            List<RemoteTBSServer> clients = new ArrayList<RemoteTBSServer>();
+            for (int c = 0; c < connectionCount; c++)
+            {
+                clients.add(new RemoteTBSServer(host, networkServer.getPort()));
+            }
+
+            long start = System.nanoTime();
+            List<CompletableFuture<String>> tickets = new ArrayList<CompletableFuture<String>>(ticketCount);
+            for (int seat = 0; seat < ticketCount; seat++)
+            {
+                tickets.add(clients.get(seat % connectionCount).issueTicketAsync(perfID, seat / dimension + 1,
+                        seat % dimension + 1));
+            }
+            CompletableFuture.allOf(tickets.toArray(new CompletableFuture<?>[0])).join();
+            printThroughput(connectionCount + " connections", ticketCount, start);
+
+            for (RemoteTBSServer client : clients)
+            {
+                client.close();
+            }
+            networkServer.close();
+        }
+        System.out.println();
+    }
+
+    /**
+     * Sells every seat of a performance, with each buyer taking every seat whose index leaves its own remainder, and
+     * prints the throughput.
+     * @param server The server holding the performance.
+     * @param perfID The ID of the performance, with no seats sold.
+     * @param dimension The seating dimension of its theatre.
+     * @param threadCount The number of buyers.
+     * @param label What to print the throughput as, or null to print nothing.
+     */
+    private static void sellEverySeat(TBSServer server, String perfID, int dimension, int threadCount, String label)
+            throws InterruptedException
+    {
+        List<Thread> buyers = new ArrayList<Thread>();
+        for (int t = 0; t < threadCount; t++)
+        {
+            final int firstSeat = t;
+            buyers.add(new Thread(() -> {
+                for (int seat = firstSeat; seat < dimension * dimension; seat += threadCount)
+                {
+                    server.issueTicket(perfID, seat / dimension + 1, seat % dimension + 1);
+                }
+            }));
+        }
+
+        long start = System.nanoTime();
+        for (Thread buyer : buyers)
+        {
+            buyer.start();
+        }
+        for (Thread buyer : buyers)
+        {
+            buyer.join();
+        }
+        if (label != null)
+        {
+            printThroughput(label, dimension * dimension, start);
+        }
+    }
+
+    /**
+     * @param server A server with nothing on it.
+     * @param dimension The seating dimension of the theatre to hold the performance in.
+     * @return The ID of a new performance in a new theatre.
+     */
+    private static String scheduleBenchmarkPerformance(TBSServer server, int dimension) throws IOException
+    {
+        server.initialise(writeTheatreFile(new int[] {dimension}).toString());
+        String actID = server.addAct("Benchmark Act", server.addArtist("Benchmark Artist"), 90);
+        return server.schedulePerformance(actID, "B" + dimension, startTime(0), "$20", "$10");
+    }
+
+    private static void printThroughput(String label, int ticketCount, long startNanos)
+    {
+        long micros = Math.max(1, (System.nanoTime() - startNanos) / 1000);
+        System.out.println("\t" + label + ": " + micros / 1000 + " ms, " + (long) ticketCount * 1000000 / micros
+                + " tickets per second");
+    }
+
+    /**
+     * Times restarting a server with every seat of many performances sold, first by replaying its journal and then
+     * from a snapshot.
+     * @param performanceCount The number of performances.
+     * @param dimension The seating dimension of the theatre they are all held in.
+     */
+    private static void restart(int performanceCount, int dimension) throws IOException
+    {
+        System.out.println("restart time for " + performanceCount * dimension * dimension + " sold tickets");
+        Path journal = Files.createTempFile("journal", ".tbs");
+        Path snapshot = Files.createTempFile("snapshot", ".tbs");
+        Files.delete(journal);
+
+        TBSServerImpl server = new TBSServerImpl(journal.toString());
+        server.initialise(writeTheatreFile(new int[] {dimension}).toString());
+        String actID = server.addAct("Benchmark Act", server.addArtist("Benchmark Artist"), 90);
+        for (int p = 0; p < performanceCount; p++)
+        {
+            String perfID = server.schedulePerformance(actID, "B" + dimension, startTime(p), "$20", "$10");
+            for (int row = 1; row <= dimension; row++)
+            {
+                List<String> seats = new ArrayList<String>();
+                for (int seat = 1; seat <= dimension; seat++)
+                {
+                    seats.add(row + "\t" + seat);
+                }
+                server.issueTickets(perfID, seats);
+            }
+        }
+        server.close();
+
+        long start = System.nanoTime();
+        server = new TBSServerImpl(journal.toString());
+        System.out.println("\treplay " + Files.size(journal) / 1024 + " KB journal: "
+                + (System.nanoTime() - start) / 1000000 + " ms");
+
+        start = System.nanoTime();
+        server.writeSnapshot(snapshot.toString());
+        System.out.println("\twrite " + Files.size(snapshot) / 1024 + " KB snapshot: "
+                + (System.nanoTime() - start) / 1000000 + " ms");
+        server.close();
+
+        start = System.nanoTime();
+        new TBSServerImpl(snapshot.toString(), journal.toString()).close();
+        System.out.println("\tload snapshot: " + (System.nanoTime() - start) / 1000000 + " ms");
+
+        Files.delete(journal);
+        Files.delete(snapshot);
+        System.out.println();
+    }
+
+    /**
+     * Measures the heap taken up by many performances, and the time spent collecting garbage while creating them,
+     * with each kind of seat store.
+     * @param performanceCount The number of performances.
+     * @param dimension The seating dimension of the theatre they are all held in.
+     */
+    private static void seatStoreHeapUse(int performanceCount, int dimension) throws IOException
+    {
+        System.out.println("heap use for " + performanceCount + " performances of " + dimension * dimension
+                + " seats");
+        Path mappedFile = Files.createTempFile("seats", ".bin");
+        SeatStore[] stores = {new HeapSeatStore(), new OffHeapSeatStore(),
+                new OffHeapSeatStore(mappedFile.toString())};
+        String[] names = {"heap", "direct memory", "mapped file"};
+        for (int s = 0; s < stores.length; s++)
+        {
+            long heapBefore = usedHeapAfterGC();
+            long gcMillisBefore = gcMillis();
+
+            TBSServerImpl server = new TBSServerImpl(stores[s]);
+            server.initialise(writeTheatreFile(new int[] {dimension}).toString());
+            String actID = server.addAct("Benchmark Act", server.addArtist("Benchmark Artist"), 90);
+            for (int p = 0; p < performanceCount; p++)
+            {
+                server.schedulePerformance(actID, "B" + dimension, startTime(p), "$20", "$10");
+            }
+
+            long heapUsed = usedHeapAfterGC() - heapBefore;
+            System.out.println("\t" + names[s] + ": " + heapUsed / 1024 / 1024 + " MB of heap, "
+                    + (gcMillis() - gcMillisBefore) + " ms in GC");
+            server.close();
+        }
+        Files.delete(mappedFile);
+        System.out.println();
+    }
+
+    private static long usedHeapAfterGC()
+    {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long gcMillis()
+    {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+
+    /**
+     * Times schedulePerformance in theatres of growing seating dimension.
+     * @param dimensions The seating dimensions to measure.
+     */
+    private static void schedulePerformance(int[] dimensions) throws IOException
+    {
+        System.out.println("schedulePerformance latency by theatre dimension");
+        TBSServer server = new TBSServerImpl();
+        server.initialise(writeTheatreFile(dimensions).toString());
+        String artistID = server.addArtist("Benchmark Artist");
+        String actID = server.addAct("Benchmark Act", artistID, 90);
+
+        for (int dimension : dimensions)
+        {
+            //one performance a day, so that no two performances overlap in the same theatre
+            String theatreID = "B" + dimension;
+            for (int i = 0; i < WARM_UP_ROUNDS; i++)
+            {
+                server.schedulePerformance(actID, theatreID, startTime(i), "$20", "$10");
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < MEASURED_ROUNDS; i++)
+            {
+                server.schedulePerformance(actID, theatreID, startTime(WARM_UP_ROUNDS + i), "$20", "$10");
+            }
+            long micros = (System.nanoTime() - start) / MEASURED_ROUNDS / 1000;
+            System.out.println("\t" + dimension + "x" + dimension + " (" + dimension * dimension + " seats): "
+                    + micros + " us per performance");
+        }
+        System.out.println();
+    }
+
+    /**
+     * @param day The number of days after the first start time.
+     * @return A start time in the format yyyy-mm-ddThh:mm.
+     */
+    private static String startTime(int day)
+    {
+        return FIRST_START_TIME.plusDays(day).toString();
+    }
+
+    /**
+     * Writes a theatre file with one square theatre per dimension, with IDs of the form "B" + dimension.
+     * @param dimensions The seating dimensions of the theatres.
+     * @return The path of the temporary file.
+     */
+    private static Path writeTheatreFile(int[] dimensions) throws IOException
+    {
+        List<String> lines = new ArrayList<String>();
+        for (int dimension : dimensions)
+        {
+            lines.add("THEATRE\tB" + dimension + "\t" + dimension + "\t" + dimension * dimension);
+        }
+
+        Path file = Files.createTempFile("theatres", ".csv");
+        file.toFile().deleteOnExit();
+        Files.write(file, lines, StandardCharsets.UTF_8);
+        return file;
+    }
+}
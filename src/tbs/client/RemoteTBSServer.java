@@ -0,0 +1,648 @@
+package tbs.client;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import tbs.server.AsyncTBSServer;
+import tbs.server.SeatTier;
+import tbs.server.TBSProtocol;
+import tbs.server.TBSServer;
+
+/**
+ * A client for a TBSNetworkServer. It can be used as a TBSServer, in which case each request waits for its response,
+ * or as an AsyncTBSServer, in which case many requests can be sent without waiting and their responses are matched up
+ * as they arrive. The client is safe to use from several threads at once, which share the one connection.
+ * <p>
+ * If the server throws while carrying out a request, the request throws an IllegalStateException holding the
+ * server's message. If the connection fails, the request throws an UncheckedIOException, and so does every later
+ * request. Paths given to initialise are opened by the server, on the server's machine.
+ * <p>
+ * Futures are completed on the thread that reads responses, so anything chained onto them that may block should use
+ * the Async variants of CompletableFuture's methods.
+ */
+public class RemoteTBSServer implements TBSServer, AsyncTBSServer, Closeable
+{
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+
+    private final Socket socket;
+    private final DataInputStream input;
+    private final OutputStream output;
+    private final AtomicInteger nextRequestID = new AtomicInteger(0);
+    private final Map<Integer, CompletableFuture<Object>> pending =
+            new ConcurrentHashMap<Integer, CompletableFuture<Object>>(); //sent, but not yet answered
+    private volatile IOException failure; //set once the connection can no longer be used
+
+    /**
+     * Connects to a network server.
+     * @param host The name or address of the server's machine.
+     * @param port The port the server is listening on.
+     * @throws IOException If the connection cannot be made.
+     */
+    public RemoteTBSServer(String host, int port) throws IOException
+    {
+        this.socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        this.input = new DataInputStream(new BufferedInputStream(socket.getInputStream(), READ_BUFFER_BYTES));
+        this.output = socket.getOutputStream();
+
+        Thread reader = new Thread(this::readResponses, "tbs-remote-" + socket.getLocalPort());
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Closes the connection. Requests still waiting for a response fail.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        fail(new IOException("The connection to the server is closed."));
+    }
+
+    /**
+     * Sends a request without waiting for its response.
+     * @param request The kind of request, from TBSProtocol.
+     * @param parameters Appends the request's parameters to its frame.
+     * @return A future completed with the request's result.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> send(byte request, Consumer<TBSProtocol.FrameBuilder> parameters)
+    {
+        int requestID = nextRequestID.getAndIncrement();
+        CompletableFuture<Object> result = new CompletableFuture<Object>();
+        try
+        {
+            TBSProtocol.FrameBuilder frame = new TBSProtocol.FrameBuilder().putInt(requestID).putByte(request);
+            parameters.accept(frame);
+            ByteBuffer bytes = frame.toFrame();
+
+            //registered before it is sent, so the response always finds it
+            pending.put(requestID, result);
+            synchronized (output)
+            {
+                if (failure != null)
+                {
+                    throw failure;
+                }
+                output.write(bytes.array(), 0, bytes.limit());
+            }
+        }
+        catch (IOException e)
+        {
+            pending.remove(requestID);
+            result.completeExceptionally(new UncheckedIOException(e));
+        }
+        catch (RuntimeException e)
+        {
+            pending.remove(requestID);
+            result.completeExceptionally(e);
+        }
+        return (CompletableFuture<T>) result;
+    }
+
+    /**
+     * Waits for a request to complete.
+     * @param result The future result of the request.
+     * @return The result.
+     */
+    private static <T> T await(CompletableFuture<T> result)
+    {
+        try
+        {
+            return result.join();
+        }
+        catch (CompletionException e)
+        {
+            //rethrow what the request itself failed with, rather than the wrapper
+            if (e.getCause() instanceof RuntimeException)
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Reads responses until the connection fails or is closed, completing the request each one answers.
+     */
+    private void readResponses()
+    {
+        try
+        {
+            while (true)
+            {
+                int length = input.readInt();
+                if (length < 0 || length > TBSProtocol.MAX_FRAME_BYTES)
+                {
+                    throw new IOException("The server sent a frame of " + length + " bytes.");
+                }
+                byte[] body = new byte[length];
+                input.readFully(body);
+                complete(ByteBuffer.wrap(body));
+            }
+        }
+        catch (IOException e)
+        {
+            fail(e);
+        }
+        catch (RuntimeException e)
+        {
+            fail(new IOException("The server sent a response that could not be read.", e));
+        }
+    }
+
+    /**
+     * @param frame A response frame, without its length.
+     */
+    private void complete(ByteBuffer frame)
+    {
+        CompletableFuture<Object> result = pending.remove(frame.getInt());
+        if (result == null)
+        {
+            return;
+        }
+
+        if (frame.get() == TBSProtocol.FAILED)
+        {
+            result.completeExceptionally(new IllegalStateException("The server could not carry out the request: "
+                    + TBSProtocol.getString(frame)));
+        }
+        else if (frame.get() == TBSProtocol.STRING_RESULT)
+        {
+            result.complete(TBSProtocol.getString(frame));
+        }
+        else
+        {
+            result.complete(TBSProtocol.getStrings(frame));
+        }
+    }
+
+    /**
+     * Marks the connection as unusable, closes it, and fails every request still waiting for a response.
+     * @param cause Why the connection can no longer be used.
+     */
+    private void fail(IOException cause)
+    {
+        synchronized (output)
+        {
+            if (failure == null)
+            {
+                failure = cause;
+            }
+        }
+        try
+        {
+            socket.close();
+        }
+        catch (IOException e)
+        {
+            //it is no longer used either way
+        }
+
+        UncheckedIOException error = new UncheckedIOException(failure);
+        for (Integer requestID : pending.keySet())
+        {
+            CompletableFuture<Object> result = pending.remove(requestID);
+            if (result != null)
+            {
+                result.completeExceptionally(error);
+            }
+        }
+    }
+
+    /**
+     * @see TBSServer#initialise(String)
+     */
+    @Override
+    public CompletableFuture<String> initialiseAsync(String path)
+    {
+        return send(TBSProtocol.INITIALISE, frame -> frame.putString(path));
+    }
+
+    /**
+     * @see TBSServer#initialise(List)
+     */
+    @Override
+    public CompletableFuture<String> initialiseAsync(List<String> paths)
+    {
+        return send(TBSProtocol.INITIALISE_PATHS, frame -> frame.putStrings(paths));
+    }
+
+    /**
+     * @see TBSServer#getTheatreIDs()
+     */
+    @Override
+    public CompletableFuture<List<String>> getTheatreIDsAsync()
+    {
+        return send(TBSProtocol.GET_THEATRE_IDS, frame -> { });
+    }
+
+    /**
+     * @see TBSServer#getArtistIDs()
+     */
+    @Override
+    public CompletableFuture<List<String>> getArtistIDsAsync()
+    {
+        return send(TBSProtocol.GET_ARTIST_IDS, frame -> { });
+    }
+
+    /**
+     * @see TBSServer#getArtistNames()
+     */
+    @Override
+    public CompletableFuture<List<String>> getArtistNamesAsync()
+    {
+        return send(TBSProtocol.GET_ARTIST_NAMES, frame -> { });
+    }
+
+    /**
+     * @see TBSServer#getActIDsForArtist(String)
+     */
+    @Override
+    public CompletableFuture<List<String>> getActIDsForArtistAsync(String artistID)
+    {
+        return send(TBSProtocol.GET_ACT_IDS_FOR_ARTIST, frame -> frame.putString(artistID));
+    }
+
+    /**
+     * @see TBSServer#getPerformanceIDsForAct(String)
+     */
+    @Override
+    public CompletableFuture<List<String>> getPerformanceIDsForActAsync(String actID)
+    {
+        return send(TBSProtocol.GET_PERFORMANCE_IDS_FOR_ACT, frame -> frame.putString(actID));
+    }
+
+    /**
+     * @see TBSServer#getTicketIDsForPerformance(String)
+     */
+    @Override
+    public CompletableFuture<List<String>> getTicketIDsForPerformanceAsync(String performanceID)
+    {
+        return send(TBSProtocol.GET_TICKET_IDS_FOR_PERFORMANCE, frame -> frame.putString(performanceID));
+    }
+
+    /**
+     * @see TBSServer#addArtist(String)
+     */
+    @Override
+    public CompletableFuture<String> addArtistAsync(String name)
+    {
+        return send(TBSProtocol.ADD_ARTIST, frame -> frame.putString(name));
+    }
+
+    /**
+     * @see TBSServer#addAct(String, String, int)
+     */
+    @Override
+    public CompletableFuture<String> addActAsync(String title, String artistID, int minutesDuration)
+    {
+        return send(TBSProtocol.ADD_ACT, frame -> frame.putString(title).putString(artistID).putInt(minutesDuration));
+    }
+
+    /**
+     * @see TBSServer#schedulePerformance(String, String, String, String, String)
+     */
+    @Override
+    public CompletableFuture<String> schedulePerformanceAsync(String actID, String theatreID, String startTimeStr,
+                                                              String premiumPriceStr, String cheapSeatsStr)
+    {
+        return send(TBSProtocol.SCHEDULE_PERFORMANCE, frame -> frame.putString(actID).putString(theatreID)
+                .putString(startTimeStr).putString(premiumPriceStr).putString(cheapSeatsStr));
+    }
+
+    /**
+     * @see TBSServer#issueTicket(String, int, int)
+     */
+    @Override
+    public CompletableFuture<String> issueTicketAsync(String performanceID, int rowNumber, int seatNumber)
+    {
+        return send(TBSProtocol.ISSUE_TICKET, frame -> frame.putString(performanceID).putInt(rowNumber)
+                .putInt(seatNumber));
+    }
+
+    /**
+     * @see TBSServer#issueTickets(String, List)
+     */
+    @Override
+    public CompletableFuture<List<String>> issueTicketsAsync(String performanceID, List<String> seats)
+    {
+        return send(TBSProtocol.ISSUE_TICKETS, frame -> frame.putString(performanceID).putStrings(seats));
+    }
+
+    /**
+     * @see TBSServer#findBestAvailable(String, int, SeatTier, boolean)
+     */
+    @Override
+    public CompletableFuture<List<String>> findBestAvailableAsync(String performanceID, int count, SeatTier tier,
+                                                                  boolean hold)
+    {
+        return send(TBSProtocol.FIND_BEST_AVAILABLE, frame -> frame.putString(performanceID).putInt(count)
+                .putTier(tier).putBoolean(hold));
+    }
+
+    /**
+     * @see TBSServer#seatsAvailable(String)
+     */
+    @Override
+    public CompletableFuture<List<String>> seatsAvailableAsync(String performanceID)
+    {
+        return send(TBSProtocol.SEATS_AVAILABLE, frame -> frame.putString(performanceID));
+    }
+
+    /**
+     * @see TBSServer#seatsAvailableRanges(String)
+     */
+    @Override
+    public CompletableFuture<List<String>> seatsAvailableRangesAsync(String performanceID)
+    {
+        return send(TBSProtocol.SEATS_AVAILABLE_RANGES, frame -> frame.putString(performanceID));
+    }
+
+    /**
+     * @see TBSServer#salesReport(String)
+     */
+    @Override
+    public CompletableFuture<List<String>> salesReportAsync(String actID)
+    {
+        return send(TBSProtocol.SALES_REPORT, frame -> frame.putString(actID));
+    }
+
+    /**
+     * @see TBSServer#performancesBetween(String, String, String, int, int)
+     */
+    @Override
+    public CompletableFuture<List<String>> performancesBetweenAsync(String fromTimeStr, String toTimeStr,
+                                                                    String theatreID, int offset, int limit)
+    {
+        return send(TBSProtocol.PERFORMANCES_BETWEEN, frame -> frame.putString(fromTimeStr).putString(toTimeStr)
+                .putString(theatreID).putInt(offset).putInt(limit));
+    }
+
+    /**
+     * @see TBSServer#freeSlots(String, String)
+     */
+    @Override
+    public CompletableFuture<List<String>> freeSlotsAsync(String theatreID, String dayStr)
+    {
+        return send(TBSProtocol.FREE_SLOTS, frame -> frame.putString(theatreID).putString(dayStr));
+    }
+
+    /**
+     * @see TBSServer#revenueByTheatre()
+     */
+    @Override
+    public CompletableFuture<List<String>> revenueByTheatreAsync()
+    {
+        return send(TBSProtocol.REVENUE_BY_THEATRE, frame -> { });
+    }
+
+    /**
+     * @see TBSServer#revenueByArtist()
+     */
+    @Override
+    public CompletableFuture<List<String>> revenueByArtistAsync()
+    {
+        return send(TBSProtocol.REVENUE_BY_ARTIST, frame -> { });
+    }
+
+    /**
+     * @see TBSServer#revenueByDay()
+     */
+    @Override
+    public CompletableFuture<List<String>> revenueByDayAsync()
+    {
+        return send(TBSProtocol.REVENUE_BY_DAY, frame -> { });
+    }
+
+    /**
+     * @see TBSServer#dump()
+     */
+    @Override
+    public CompletableFuture<List<String>> dumpAsync()
+    {
+        return send(TBSProtocol.DUMP, frame -> { });
+    }
+
+    /**
+     * @see TBSServer#initialise(String)
+     */
+    @Override
+    public String initialise(String path)
+    {
+        return await(initialiseAsync(path));
+    }
+
+    /**
+     * @see TBSServer#initialise(List)
+     */
+    @Override
+    public String initialise(List<String> paths)
+    {
+        return await(initialiseAsync(paths));
+    }
+
+    /**
+     * @see TBSServer#getTheatreIDs()
+     */
+    @Override
+    public List<String> getTheatreIDs()
+    {
+        return await(getTheatreIDsAsync());
+    }
+
+    /**
+     * @see TBSServer#getArtistIDs()
+     */
+    @Override
+    public List<String> getArtistIDs()
+    {
+        return await(getArtistIDsAsync());
+    }
+
+    /**
+     * @see TBSServer#getArtistNames()
+     */
+    @Override
+    public List<String> getArtistNames()
+    {
+        return await(getArtistNamesAsync());
+    }
+
+    /**
+     * @see TBSServer#getActIDsForArtist(String)
+     */
+    @Override
+    public List<String> getActIDsForArtist(String artistID)
+    {
+        return await(getActIDsForArtistAsync(artistID));
+    }
+
+    /**
+     * @see TBSServer#getPerformanceIDsForAct(String)
+     */
+    @Override
+    public List<String> getPerformanceIDsForAct(String actID)
+    {
+        return await(getPerformanceIDsForActAsync(actID));
+    }
+
+    /**
+     * @see TBSServer#getTicketIDsForPerformance(String)
+     */
+    @Override
+    public List<String> getTicketIDsForPerformance(String performanceID)
+    {
+        return await(getTicketIDsForPerformanceAsync(performanceID));
+    }
+
+    /**
+     * @see TBSServer#addArtist(String)
+     */
+    @Override
+    public String addArtist(String name)
+    {
+        return await(addArtistAsync(name));
+    }
+
+    /**
+     * @see TBSServer#addAct(String, String, int)
+     */
+    @Override
+    public String addAct(String title, String artistID, int minutesDuration)
+    {
+        return await(addActAsync(title, artistID, minutesDuration));
+    }
+
+    /**
+     * @see TBSServer#schedulePerformance(String, String, String, String, String)
+     */
+    @Override
+    public String schedulePerformance(String actID, String theatreID, String startTimeStr, String premiumPriceStr,
+                                      String cheapSeatsStr)
+    {
+        return await(schedulePerformanceAsync(actID, theatreID, startTimeStr, premiumPriceStr, cheapSeatsStr));
+    }
+
+    /**
+     * @see TBSServer#issueTicket(String, int, int)
+     */
+    @Override
+    public String issueTicket(String performanceID, int rowNumber, int seatNumber)
+    {
+        return await(issueTicketAsync(performanceID, rowNumber, seatNumber));
+    }
+
+    /**
+     * @see TBSServer#issueTickets(String, List)
+     */
+    @Override
+    public List<String> issueTickets(String performanceID, List<String> seats)
+    {
+        return await(issueTicketsAsync(performanceID, seats));
+    }
+
+    /**
+     * @see TBSServer#findBestAvailable(String, int, SeatTier, boolean)
+     */
+    @Override
+    public List<String> findBestAvailable(String performanceID, int count, SeatTier tier, boolean hold)
+    {
+        return await(findBestAvailableAsync(performanceID, count, tier, hold));
+    }
+
+    /**
+     * @see TBSServer#seatsAvailable(String)
+     */
+    @Override
+    public List<String> seatsAvailable(String performanceID)
+    {
+        return await(seatsAvailableAsync(performanceID));
+    }
+
+    /**
+     * @see TBSServer#seatsAvailableRanges(String)
+     */
+    @Override
+    public List<String> seatsAvailableRanges(String performanceID)
+    {
+        return await(seatsAvailableRangesAsync(performanceID));
+    }
+
+    /**
+     * @see TBSServer#salesReport(String)
+     */
+    @Override
+    public List<String> salesReport(String actID)
+    {
+        return await(salesReportAsync(actID));
+    }
+
+    /**
+     * @see TBSServer#performancesBetween(String, String, String, int, int)
+     */
+    @Override
+    public List<String> performancesBetween(String fromTimeStr, String toTimeStr, String theatreID, int offset,
+                                            int limit)
+    {
+        return await(performancesBetweenAsync(fromTimeStr, toTimeStr, theatreID, offset, limit));
+    }
+
+    /**
+     * @see TBSServer#freeSlots(String, String)
+     */
+    @Override
+    public List<String> freeSlots(String theatreID, String dayStr)
+    {
+        return await(freeSlotsAsync(theatreID, dayStr));
+    }
+
+    /**
+     * @see TBSServer#revenueByTheatre()
+     */
+    @Override
+    public List<String> revenueByTheatre()
+    {
+        return await(revenueByTheatreAsync());
+    }
+
+    /**
+     * @see TBSServer#revenueByArtist()
+     */
+    @Override
+    public List<String> revenueByArtist()
+    {
+        return await(revenueByArtistAsync());
+    }
+
+    /**
+     * @see TBSServer#revenueByDay()
+     */
+    @Override
+    public List<String> revenueByDay()
+    {
+        return await(revenueByDayAsync());
+    }
+
+    /**
+     * @see TBSServer#dump()
+     */
+    @Override
+    public List<String> dump()
+    {
+        return await(dumpAsync());
+    }
+}
@@ -0,0 +1,773 @@
+package tbs.client;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import tbs.server.HeapSeatStore;
+import tbs.server.OffHeapSeatStore;
+import tbs.server.ResponseMessages;
+import tbs.server.SeatStore;
+import tbs.server.SeatTier;
+import tbs.server.TBSNetworkServer;
+import tbs.server.TBSServer;
+import tbs.server.TBSServerImpl;
+
+/**
+ * Hammers the server from many threads at once and checks that its state stays consistent, then checks the answers of
+ * the newer requests on a quiet server. Like CLI2, problems are reported by printing lines starting with FAILURE.
+ */
+public class StressTest
+{
+    private static final int DIMENSION = 60;
+    private static final int PREMIUM_PRICE = 20;
+    private static final int CHEAP_PRICE = 10;
+
+    public static void main(String[] args) throws Exception
+    {
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        concurrentIssueTicket(threads, new HeapSeatStore());
+        concurrentIssueTicket(threads, new OffHeapSeatStore());
+        concurrentCatalog(threads);
+        journalReplay(threads);
+        networkPipelining(2000);
+        bestAvailable();
+        availableRanges();
+        revenueTotals();
+        timeIndex();
+        initialiseFiles();
+        ticketIDOrder();
+    }
+
+    /**
+     * Every thread tries to buy every seat of one performance, in its own random order, with every other thread buying
+     * pairs of neighbouring seats, many of which span two words of the occupancy. Each seat must be sold exactly once,
+     * and the sales figures must add up.
+     * @param threads The number of competing buyers.
+     * @param seatStore Where the server keeps the seats.
+     */
+    private static void concurrentIssueTicket(int threads, SeatStore seatStore) throws Exception
+    {
+        System.out.println("CONCURRENT ISSUE TICKET " + threads + " threads competing for " + DIMENSION * DIMENSION
+                + " seats in a " + seatStore.getClass().getSimpleName());
+        TBSServer server = new TBSServerImpl(seatStore);
+        server.initialise(writeTheatreFile().toString());
+        String artistID = server.addArtist("Stress Artist");
+        String actID = server.addAct("Stress Act", artistID, 90);
+        String perfID = server.schedulePerformance(actID, "S1", "2018-04-03T16:00", "$" + PREMIUM_PRICE,
+                "$" + CHEAP_PRICE);
+
+        Set<String> soldTickets = ConcurrentHashMap.newKeySet();
+        AtomicInteger doubleSold = new AtomicInteger(0);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> buyers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++)
+        {
+            boolean pairs = t % 2 == 1;
+            Thread buyer = new Thread(() -> {
+                List<Integer> order = new ArrayList<Integer>();
+                for (int i = 0; i < DIMENSION * DIMENSION; i++)
+                {
+                    order.add(i);
+                }
+                Collections.shuffle(order);
+                awaitQuietly(start);
+
+                for (int seatIndex : order)
+                {
+                    List<String> ticketIDs;
+                    if (pairs && seatIndex % DIMENSION < DIMENSION - 1)
+                    {
+                        ticketIDs = server.issueTickets(perfID, Arrays.asList(seatName(seatIndex),
+                                seatName(seatIndex + 1)));
+                    }
+                    else
+                    {
+                        ticketIDs = Collections.singletonList(server.issueTicket(perfID, seatIndex / DIMENSION + 1,
+                                seatIndex % DIMENSION + 1));
+                    }
+                    for (String ticketID : ticketIDs)
+                    {
+                        if (!ticketID.startsWith("ERROR") && !soldTickets.add(ticketID))
+                        {
+                            doubleSold.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            buyers.add(buyer);
+            buyer.start();
+        }
+
+        long startTime = System.nanoTime();
+        start.countDown();
+        for (Thread buyer : buyers)
+        {
+            buyer.join();
+        }
+        long millis = (System.nanoTime() - startTime) / 1000000;
+
+        int seats = DIMENSION * DIMENSION;
+        int premiumSeats = (DIMENSION / 2) * DIMENSION;
+        long expectedReceipts = (long) premiumSeats * PREMIUM_PRICE + (long) (seats - premiumSeats) * CHEAP_PRICE;
+        check(doubleSold.get() == 0, doubleSold.get() + " seats were sold more than once");
+        check(soldTickets.size() == seats, soldTickets.size() + " distinct tickets sold, expected " + seats);
+        check(server.seatsAvailable(perfID).isEmpty(), "seats are still available after every seat was sold");
+        check(server.getTicketIDsForPerformance(perfID).size() == seats, "getTicketIDsForPerformance has "
+                + server.getTicketIDsForPerformance(perfID).size() + " tickets, expected " + seats);
+
+        String report = server.salesReport(actID).get(0);
+        String expectedReport = perfID + "\t2018-04-03T16:00\t" + seats + "\t$" + expectedReceipts;
+        check(report.equals(expectedReport), "sales report {" + report + "} expected {" + expectedReport + "}");
+
+        System.out.println("Sold " + soldTickets.size() + " seats in " + millis + " ms");
+        System.out.println("---------------- completed ----------------------");
+    }
+
+    /**
+     * Every thread adds its own artists, acts and performances and sells a ticket for each performance, while all of
+     * them race to add the same artist name. Catalog IDs must stay unique, the shared name must be accepted once, and
+     * reads must keep working throughout.
+     * @param threads The number of competing box offices.
+     */
+    private static void concurrentCatalog(int threads) throws Exception
+    {
+        final int actsPerThread = 200;
+        System.out.println("CONCURRENT CATALOG " + threads + " threads each adding " + actsPerThread + " acts");
+        TBSServerImpl server = new TBSServerImpl();
+        server.initialise(writeTheatreFile().toString());
+
+        Set<String> performanceIDs = ConcurrentHashMap.newKeySet();
+        AtomicInteger sharedNameAccepted = new AtomicInteger(0);
+        AtomicInteger failedCalls = new AtomicInteger(0);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++)
+        {
+            final int threadNumber = t;
+            Thread worker = new Thread(() -> {
+                awaitQuietly(start);
+                if (!server.addArtist("Shared Artist").startsWith("ERROR"))
+                {
+                    sharedNameAccepted.incrementAndGet();
+                }
+
+                String artistID = server.addArtist("Artist " + threadNumber);
+                if (!server.getArtistIDForName("Artist " + threadNumber).equals(artistID))
+                {
+                    failedCalls.incrementAndGet();
+                }
+                for (int i = 0; i < actsPerThread; i++)
+                {
+                    String actID = server.addAct("Act " + threadNumber + "-" + i, artistID, 60);
+                    String startTime = LocalDateTime.of(2018, 4, 3, 16, 0)
+                            .plusHours(threadNumber * actsPerThread + i).toString();
+                    String perfID = server.schedulePerformance(actID, "S1", startTime, "$20", "$10");
+                    performanceIDs.add(perfID);
+                    if (server.issueTicket(perfID, 1, 1).startsWith("ERROR") || server.getTheatreIDs().isEmpty())
+                    {
+                        failedCalls.incrementAndGet();
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+
+        start.countDown();
+        for (Thread worker : workers)
+        {
+            worker.join();
+        }
+
+        check(sharedNameAccepted.get() == 1, "shared artist name was accepted " + sharedNameAccepted.get() + " times");
+        check(server.getArtistIDs().contains(server.getArtistIDForName("Shared Artist")),
+                "the shared artist cannot be looked up by name");
+        check(server.getArtistIDForName("No Such Artist").startsWith("ERROR"), "an unknown name was looked up");
+        check(server.getArtistIDs().size() == threads + 1, server.getArtistIDs().size() + " artists, expected "
+                + (threads + 1));
+        check(performanceIDs.size() == threads * actsPerThread, performanceIDs.size()
+                + " distinct performance IDs, expected " + threads * actsPerThread);
+        check(failedCalls.get() == 0, failedCalls.get() + " calls failed");
+        check(server.schedulePerformance(server.addAct("Clash", server.getArtistIDs().get(0), 90), "S1",
+                "2018-04-03T16:30", "$20", "$10").startsWith("ERROR"), "an overlapping performance was scheduled");
+        System.out.println("---------------- completed ----------------------");
+    }
+
+    /**
+     * Every thread adds acts and performances and sells tickets on a server that keeps a journal. A snapshot is
+     * written and a few more changes made, then the server is reopened from the snapshot and its journal, with a half
+     * written record added to the end, and must come back exactly as it was.
+     * @param threads The number of competing box offices.
+     */
+    private static void journalReplay(int threads) throws Exception
+    {
+        final int actsPerThread = 20;
+        System.out.println("JOURNAL REPLAY " + threads + " threads each adding " + actsPerThread + " acts");
+        Path journal = Files.createTempFile("journal", ".tbs");
+        Files.delete(journal);
+        journal.toFile().deleteOnExit();
+
+        TBSServerImpl server = new TBSServerImpl(journal.toString());
+        server.initialise(writeTheatreFile().toString());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++)
+        {
+            final int threadNumber = t;
+            Thread worker = new Thread(() -> {
+                awaitQuietly(start);
+                String artistID = server.addArtist("Journal Artist " + threadNumber);
+                for (int i = 0; i < actsPerThread; i++)
+                {
+                    String actID = server.addAct("Act " + threadNumber + "-" + i, artistID, 60);
+                    String startTime = LocalDateTime.of(2018, 4, 3, 16, 0)
+                            .plusHours(threadNumber * actsPerThread + i).toString();
+                    String perfID = server.schedulePerformance(actID, "S1", startTime, "$20", "$10");
+                    server.issueTicket(perfID, 1 + i % DIMENSION, 1 + threadNumber % DIMENSION);
+                    server.issueTickets(perfID, List.of("40\t1", "40\t2"));
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+
+        //keep saving snapshots while the changes are made, so each snapshot catches some of them in flight
+        Path busySnapshot = Files.createTempFile("snapshot", ".tbs");
+        busySnapshot.toFile().deleteOnExit();
+        int busySnapshots = 0;
+        start.countDown();
+        for (Thread worker : workers)
+        {
+            while (worker.isAlive())
+            {
+                server.writeSnapshot(busySnapshot.toString());
+                busySnapshots++;
+            }
+            worker.join();
+        }
+        List<String> before = describe(server);
+
+        Path journalCopy = Files.createTempFile("journal", ".tbs");
+        journalCopy.toFile().deleteOnExit();
+        Files.copy(journal, journalCopy, StandardCopyOption.REPLACE_EXISTING);
+        TBSServerImpl busyRestored = new TBSServerImpl(busySnapshot.toString(), journalCopy.toString());
+        check(before.equals(describe(busyRestored)), "state from a snapshot written during " + busySnapshots
+                + " changes and the journal differs");
+        busyRestored.close();
+
+        //save a snapshot halfway, so the rest of the changes are only in the journal
+        Path snapshot = Files.createTempFile("snapshot", ".tbs");
+        snapshot.toFile().deleteOnExit();
+        server.writeSnapshot(snapshot.toString());
+        String lateActID = server.addAct("Late Act", server.getArtistIDs().get(0), 60);
+        String latePerfID = server.schedulePerformance(lateActID, "S1", "2019-01-01T10:00", "$20", "$10");
+        server.issueTicket(latePerfID, 2, 2);
+
+        //rejected changes must not reach the journal, or it could not be replayed
+        check(server.addAct("Orphan Act", "no such artist", 60).startsWith("ERROR"),
+                "an act was added for an artist that does not exist");
+        check(server.addAct("Timeless Act", server.getArtistIDs().get(0), 0).startsWith("ERROR"),
+                "an act with no duration was added");
+        check(server.schedulePerformance(lateActID, "S1", "2019-02-01T10:00", "20", "$10").startsWith("ERROR"),
+                "a performance with a malformed price was scheduled");
+        List<String> beforeSnapshotRestart = describe(server);
+        server.close();
+
+        TBSServerImpl restored = new TBSServerImpl(snapshot.toString(), journal.toString());
+        check(beforeSnapshotRestart.equals(describe(restored)), "state after snapshot and journal differs");
+        restored.close();
+        check(before.equals(describe(new TBSServerImpl(snapshot.toString(), null))),
+                "state from the snapshot alone differs from the state when it was written");
+
+        Files.write(journal, new byte[] {0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+        TBSServerImpl reopened = new TBSServerImpl(snapshot.toString(), journal.toString());
+        List<String> after = describe(reopened);
+        check(beforeSnapshotRestart.equals(after), "state after replay differs from state before");
+
+        String newArtistID = reopened.addArtist("Journal Artist After Restart");
+        check(!newArtistID.startsWith("ERROR") && !before.contains("artist " + newArtistID),
+                "artist ID " + newArtistID + " was handed out again after replay");
+        reopened.close();
+        check(describe(new TBSServerImpl(snapshot.toString(), journal.toString())).contains("artist " + newArtistID),
+                "artist added after replay was not journaled");
+        System.out.println("Replayed " + before.size() + " lines of state");
+        System.out.println("---------------- completed ----------------------");
+    }
+
+    /**
+     * Many clients connect to a network server on the loopback address, and each sends all of its ticket requests
+     * before reading any response. Every seat is wanted by two clients, so each must be sold exactly once. The server
+     * must then describe the same state over the network as it does in-process.
+     * @param connections The number of clients.
+     */
+    private static void networkPipelining(int connections) throws Exception
+    {
+        System.out.println("NETWORK PIPELINING " + connections + " connections competing for " + DIMENSION * DIMENSION
+                + " seats");
+        TBSServerImpl server = new TBSServerImpl();
+        TBSNetworkServer networkServer = new TBSNetworkServer(server,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 64);
+        String host = InetAddress.getLoopbackAddress().getHostAddress();
+        RemoteTBSServer admin = new RemoteTBSServer(host, networkServer.getPort());
+        admin.initialise(writeTheatreFile().toString());
+        String actID = admin.addAct("Network Act", admin.addArtist("Network Artist \u00e9\u4e2d"), 90);
+        String perfID = admin.schedulePerformance(actID, "S1", "2018-04-03T16:00", "$" + PREMIUM_PRICE,
+                "$" + CHEAP_PRICE);
+
+        List<RemoteTBSServer> clients = new ArrayList<RemoteTBSServer>();
+        for (int c = 0; c < connections; c++)
+        {
+            clients.add(new RemoteTBSServer(host, networkServer.getPort()));
+        }
+
+        //each half of the clients asks for every seat once
+        int half = Math.max(1, connections / 2);
+        List<CompletableFuture<String>> tickets = new ArrayList<CompletableFuture<String>>();
+        for (int c = 0; c < connections; c++)
+        {
+            for (int seatIndex = c % half; seatIndex < DIMENSION * DIMENSION; seatIndex += half)
+            {
+                tickets.add(clients.get(c).issueTicketAsync(perfID, seatIndex / DIMENSION + 1,
+                        seatIndex % DIMENSION + 1));
+            }
+        }
+
+        Set<String> soldTickets = ConcurrentHashMap.newKeySet();
+        int refused = 0;
+        for (CompletableFuture<String> ticket : tickets)
+        {
+            String ticketID = ticket.join();
+            if (ticketID.startsWith("ERROR"))
+            {
+                refused++;
+            }
+            else
+            {
+                check(soldTickets.add(ticketID), "ticket " + ticketID + " was sold twice");
+            }
+        }
+        check(soldTickets.size() == DIMENSION * DIMENSION, soldTickets.size() + " seats sold, expected "
+                + DIMENSION * DIMENSION);
+        check(refused == tickets.size() - soldTickets.size(), refused + " requests refused, expected "
+                + (tickets.size() - soldTickets.size()));
+
+        check(describe(admin).equals(describe(server)), "state over the network differs from state in-process");
+        check(admin.freeSlots("S1", "2018-04-03").equals(server.freeSlots("S1", "2018-04-03")),
+                "free slots over the network differ");
+        check(admin.performancesBetween("2018-04-03T00:00", "2018-04-04T00:00", null, 0, 10)
+                .equals(server.performancesBetween("2018-04-03T00:00", "2018-04-04T00:00", null, 0, 10)),
+                "performances over the network differ");
+        check(admin.findBestAvailable(perfID, 2, SeatTier.PREMIUM, false)
+                .equals(server.findBestAvailable(perfID, 2, SeatTier.PREMIUM, false)),
+                "best available seats over the network differ");
+        try
+        {
+            admin.issueTickets(perfID, null);
+            check(false, "a request the server threw on did not throw");
+        }
+        catch (IllegalStateException e)
+        {
+            //expected, and the connection must still work
+        }
+        check(admin.getTheatreIDs().equals(List.of("S1")), "the connection stopped working after a failed request");
+
+        for (RemoteTBSServer client : clients)
+        {
+            client.close();
+        }
+        admin.close();
+        try
+        {
+            admin.getTheatreIDs();
+            check(false, "a request on a closed connection did not throw");
+        }
+        catch (UncheckedIOException e)
+        {
+            //expected
+        }
+        networkServer.close();
+        System.out.println("Sold " + soldTickets.size() + " seats through " + tickets.size() + " pipelined requests");
+        System.out.println("---------------- completed ----------------------");
+    }
+
+    /**
+     * Finds blocks of seats in each tier of an empty performance, then as its rows fill up. The best block is in the
+     * row nearest the stage with room for it, as near the middle of that row as it can be.
+     */
+    private static void bestAvailable() throws IOException
+    {
+        System.out.println("BEST AVAILABLE in rows of " + DIMENSION + " seats");
+        TBSServer server = new TBSServerImpl();
+        String perfID = scheduleQuietPerformance(server);
+
+        check(server.findBestAvailable(perfID, 4, SeatTier.PREMIUM, false).equals(seatBlock(1, 29, 4)),
+                "the best premium block of an empty performance is not in the middle of row 1");
+        check(server.findBestAvailable(perfID, 4, SeatTier.CHEAP, false).equals(seatBlock(DIMENSION / 2 + 1, 29, 4)),
+                "the best cheap block of an empty performance is not in the middle of the first cheap row");
+
+        List<String> held = server.findBestAvailable(perfID, 4, SeatTier.PREMIUM, true);
+        check(held.size() == 4 && !held.get(0).startsWith("ERROR"), "holding the best block gave " + held);
+        check(server.issueTicket(perfID, 1, 30).startsWith("ERROR"), "a seat of the held block was still free");
+        check(server.findBestAvailable(perfID, 4, SeatTier.PREMIUM, false).equals(seatBlock(1, 25, 4)),
+                "the next best block is not beside the held one, on the side of the lower seat numbers");
+
+        //leave only seats 25 to 28 free in row 1, so a larger block has to go back a row
+        for (int seatNumber = 1; seatNumber <= DIMENSION; seatNumber++)
+        {
+            if (seatNumber < 25 || seatNumber > 32)
+            {
+                server.issueTicket(perfID, 1, seatNumber);
+            }
+        }
+        check(server.findBestAvailable(perfID, 4, SeatTier.PREMIUM, false).equals(seatBlock(1, 25, 4)),
+                "a block that still fits in row 1 was not found there");
+        check(server.findBestAvailable(perfID, 5, SeatTier.PREMIUM, false).equals(seatBlock(2, 28, 5)),
+                "a block too large for what is left of row 1 is not in the middle of row 2");
+
+        check(server.findBestAvailable(perfID, 0, SeatTier.PREMIUM, false).get(0).startsWith("ERROR"),
+                "a block of no seats was found");
+        check(server.findBestAvailable(perfID, DIMENSION + 1, SeatTier.CHEAP, false).get(0).startsWith("ERROR"),
+                "a block wider than a row was found");
+        check(server.findBestAvailable("no such performance", 1, SeatTier.CHEAP, false).get(0).startsWith("ERROR"),
+                "a block was found for a performance that does not exist");
+        System.out.println("---------------- completed ----------------------");
+    }
+
+    /**
+     * Takes seats that split rows into runs of different shapes, and checks the runs listed for each row.
+     */
+    private static void availableRanges() throws IOException
+    {
+        System.out.println("AVAILABLE RANGES in rows of " + DIMENSION + " seats");
+        TBSServer server = new TBSServerImpl();
+        String perfID = scheduleQuietPerformance(server);
+
+        List<String> ranges = server.seatsAvailableRanges(perfID);
+        check(ranges.size() == DIMENSION && ranges.get(0).equals("1\t1-" + DIMENSION),
+                "an empty performance has ranges starting " + ranges.subList(0, Math.min(2, ranges.size())));
+
+        //both ends and the middle of row 1, all of row 2, one seat of row 3, and all but one seat of row 4
+        server.issueTickets(perfID, List.of("1\t1", "1\t30", "1\t31", "1\t" + DIMENSION, "3\t5"));
+        for (int seatNumber = 1; seatNumber <= DIMENSION; seatNumber++)
+        {
+            server.issueTicket(perfID, 2, seatNumber);
+            if (seatNumber != 7)
+            {
+                server.issueTicket(perfID, 4, seatNumber);
+            }
+        }
+
+        ranges = server.seatsAvailableRanges(perfID);
+        List<String> expected = List.of("1\t2-29,32-" + (DIMENSION - 1), "3\t1-4,6-" + DIMENSION, "4\t7",
+                "5\t1-" + DIMENSION);
+        check(ranges.size() == DIMENSION - 1, ranges.size() + " rows have ranges, expected " + (DIMENSION - 1));
+        check(ranges.subList(0, expected.size()).equals(expected), "ranges start " + ranges.subList(0,
+                expected.size()) + ", expected " + expected);
+
+        int listedSeats = server.seatsAvailable(perfID).size();
+        int expectedSeats = DIMENSION * DIMENSION - 4 - DIMENSION - 1 - (DIMENSION - 1);
+        check(listedSeats == expectedSeats, "seatsAvailable lists " + listedSeats + " seats, expected "
+                + expectedSeats);
+        check(server.seatsAvailableRanges("no such performance").get(0).startsWith("ERROR"),
+                "ranges were listed for a performance that does not exist");
+        System.out.println("---------------- completed ----------------------");
+    }
+
+    /**
+     * Sells tickets at different prices for two artists on two days, and checks that every rollup adds them up.
+     * Refused sales must not count.
+     */
+    private static void revenueTotals() throws IOException
+    {
+        System.out.println("REVENUE TOTALS by theatre, artist and day");
+        TBSServer server = new TBSServerImpl();
+        server.initialise(writeTheatreFile().toString());
+        String firstArtistID = server.addArtist("Revenue Artist A");
+        String secondArtistID = server.addArtist("Revenue Artist B");
+        String firstActID = server.addAct("Revenue Act A", firstArtistID, 90);
+        String secondActID = server.addAct("Revenue Act B", secondArtistID, 90);
+        String afternoonID = server.schedulePerformance(firstActID, "S1", "2018-04-03T16:00", "$20", "$10");
+        String eveningID = server.schedulePerformance(secondActID, "S1", "2018-04-03T19:00", "$30", "$15");
+        server.schedulePerformance(secondActID, "S1", "2018-04-05T10:00", "$20", "$10");
+
+        //two premium and one cheap seat in the afternoon, and two cheap seats in the evening
+        int cheapRow = DIMENSION / 2 + 1;
+        server.issueTicket(afternoonID, 1, 1);
+        server.issueTicket(afternoonID, 1, 2);
+        server.issueTicket(afternoonID, cheapRow, 1);
+        server.issueTickets(eveningID, List.of(cheapRow + "\t1", cheapRow + "\t2"));
+        check(server.issueTicket(afternoonID, 1, 1).startsWith("ERROR"), "a seat was sold twice");
+        check(server.issueTickets(eveningID, List.of("1\t1", cheapRow + "\t2")).get(0).startsWith("ERROR"),
+                "a group with a seat already sold was sold");
+
+        List<String> byTheatre = server.revenueByTheatre();
+        check(byTheatre.equals(List.of("S1\t5\t$80")), "revenue by theatre is " + byTheatre);
+        List<String> byArtist = server.revenueByArtist();
+        List<String> expectedByArtist = List.of(firstArtistID + "\t3\t$50", secondArtistID + "\t2\t$30");
+        check(byArtist.equals(expectedByArtist), "revenue by artist is " + byArtist + ", expected "
+                + expectedByArtist);
+        List<String> byDay = server.revenueByDay();
+        check(byDay.equals(List.of("2018-04-03\t5\t$80", "2018-04-05\t0\t$0")), "revenue by day is " + byDay);
+        System.out.println("---------------- completed ----------------------");
+    }
+
+    /**
+     * Schedules performances in two theatres over a weekend, and checks the pages of performances in a time range and
+     * the free slots of a day, including one that starts with the end of the previous night's performance.
+     */
+    private static void timeIndex() throws IOException
+    {
+        System.out.println("TIME INDEX of performances over a weekend");
+        TBSServer server = new TBSServerImpl();
+        server.initialise(writeTheatreFile().toString());
+        Path secondTheatre = Files.createTempFile("theatres", ".csv");
+        secondTheatre.toFile().deleteOnExit();
+        Files.write(secondTheatre, List.of("THEATRE\tS2\t10\t100"), StandardCharsets.UTF_8);
+        server.initialise(secondTheatre.toString());
+        String actID = server.addAct("Weekend Act", server.addArtist("Weekend Artist"), 90);
+
+        server.schedulePerformance(actID, "S1", "2018-04-05T12:00", "$20", "$10");
+        String fridayID = server.schedulePerformance(actID, "S1", "2018-04-06T18:00", "$20", "$10");
+        String fridayOtherID = server.schedulePerformance(actID, "S2", "2018-04-06T18:00", "$20", "$10");
+        String lateID = server.schedulePerformance(actID, "S1", "2018-04-06T23:00", "$20", "$10");
+        String matineeID = server.schedulePerformance(actID, "S1", "2018-04-07T14:00", "$20", "$10");
+        String eveningID = server.schedulePerformance(actID, "S1", "2018-04-07T20:00", "$20", "$10");
+        server.schedulePerformance(actID, "S1", "2018-04-09T10:00", "$20", "$10");
+
+        //performances that start together are in order of ID, and both ends of the range are included
+        String from = "2018-04-06T18:00";
+        String to = "2018-04-07T20:00";
+        List<String> expected = List.of(fridayID + "\t2018-04-06T18:00\tS1", fridayOtherID + "\t2018-04-06T18:00\tS2",
+                lateID + "\t2018-04-06T23:00\tS1", matineeID + "\t2018-04-07T14:00\tS1",
+                eveningID + "\t2018-04-07T20:00\tS1");
+        List<String> pages = new ArrayList<String>();
+        for (int offset = 0; offset < expected.size() + 2; offset += 2)
+        {
+            pages.addAll(server.performancesBetween(from, to, null, offset, 2));
+        }
+        check(pages.equals(expected), "pages of two performances give " + pages + ", expected " + expected);
+        check(server.performancesBetween(from, to, "", 0, 100).equals(expected),
+                "an empty theatre ID does not list every theatre");
+        List<String> inS1 = server.performancesBetween(from, to, "S1", 1, 100);
+        check(inS1.equals(List.of(expected.get(2), expected.get(3), expected.get(4))),
+                "the second page of performances in S1 is " + inS1);
+        check(server.performancesBetween("2018-04-06 18:00", to, null, 0, 100).get(0).startsWith("ERROR"),
+                "a malformed start of range was accepted");
+        check(server.performancesBetween(from, to, "S9", 0, 100).get(0).startsWith("ERROR"),
+                "performances were listed for a theatre that does not exist");
+
+        List<String> saturday = server.freeSlots("S1", "2018-04-07");
+        List<String> expectedSaturday = List.of("2018-04-07T00:30\t2018-04-07T14:00",
+                "2018-04-07T15:30\t2018-04-07T20:00", "2018-04-07T21:30\t2018-04-08T00:00");
+        check(saturday.equals(expectedSaturday), "free slots in S1 on Saturday are " + saturday + ", expected "
+                + expectedSaturday);
+        check(server.freeSlots("S2", "2018-04-07").equals(List.of("2018-04-07T00:00\t2018-04-08T00:00")),
+                "a day with no performances is not one free slot");
+        check(server.freeSlots("S1", "2018-4-7").get(0).startsWith("ERROR"), "a malformed day was accepted");
+        check(server.freeSlots("S9", "2018-04-07").get(0).startsWith("ERROR"),
+                "free slots were listed for a theatre that does not exist");
+        System.out.println("---------------- completed ----------------------");
+    }
+
+    /**
+     * Initialises from several files and a directory at once. A bad line is reported with its file and line number,
+     * the first bad file given is the one reported, and a failure adds no theatres at all.
+     */
+    private static void initialiseFiles() throws IOException
+    {
+        System.out.println("INITIALISE FILES in parallel");
+        TBSServer server = new TBSServerImpl();
+        server.initialise(writeTheatreFile().toString());
+        Path directory = Files.createTempDirectory("theatres");
+        Path first = writeLines(directory.resolve("a.csv"), "THEATRE\tS2\t10\t100", "THEATRE\tS3\t10\t100");
+        Path second = writeLines(directory.resolve("b.csv"), "THEATRE\tS4\t10\t100");
+        Path crossDuplicate = writeLines(Files.createTempFile("theatres", ".csv"), "THEATRE\tS5\t10\t100",
+                "THEATRE\tS2\t10\t100");
+        Path serverDuplicate = writeLines(Files.createTempFile("theatres", ".csv"), "THEATRE\tS1\t10\t100");
+        Path badFormat = writeLines(Files.createTempFile("theatres", ".csv"), "THEATRE\tS6\t10\t100",
+                "THEATRE\tS7\t10\t100", "THEATER\tS8\t10\t100");
+        //files are deleted on exit in the reverse of this order, so the directory goes once it is empty
+        for (Path file : List.of(directory, first, second, crossDuplicate, serverDuplicate, badFormat))
+        {
+            file.toFile().deleteOnExit();
+        }
+
+        //the directory's files are read in order of name, so the duplicate is found in the file given after it
+        String result = server.initialise(List.of(directory.toString(), crossDuplicate.toString()));
+        String expected = ResponseMessages.DUPLICATE_CODE_ERR_MSG.atLine(crossDuplicate.toString(), 2);
+        check(result.equals(expected), "a duplicate across files gave {" + result + "}, expected {" + expected + "}");
+        result = server.initialise(List.of(serverDuplicate.toString()));
+        expected = ResponseMessages.DUPLICATE_CODE_ERR_MSG.atLine(serverDuplicate.toString(), 1);
+        check(result.equals(expected), "a duplicate of a theatre on the server gave {" + result + "}, expected {"
+                + expected + "}");
+        result = server.initialise(List.of(badFormat.toString(), serverDuplicate.toString()));
+        expected = ResponseMessages.FILE_FORMAT_ERR_MSG.atLine(badFormat.toString(), 3);
+        check(result.equals(expected), "two bad files gave {" + result + "}, expected {" + expected + "}");
+        check(server.initialise(List.of(first.toString(), directory.resolve("missing.csv").toString()))
+                .startsWith("ERROR"), "a missing file was accepted");
+        check(server.getTheatreIDs().equals(List.of("S1")), "failed initialisations added " + server.getTheatreIDs());
+
+        result = server.initialise(List.of(directory.toString()));
+        check(result.isEmpty(), "initialising from a directory gave {" + result + "}");
+        check(server.getTheatreIDs().equals(List.of("S1", "S2", "S3", "S4")), "initialising from a directory gave "
+                + server.getTheatreIDs());
+        System.out.println("---------------- completed ----------------------");
+    }
+
+    /**
+     * Sells seats out of order, across rows and words of the occupancy, and checks that the ticket IDs listed for the
+     * performance are exactly those handed out, in alphabetical order.
+     */
+    private static void ticketIDOrder() throws IOException
+    {
+        System.out.println("TICKET ID ORDER for seats sold out of order");
+        TBSServer server = new TBSServerImpl();
+        String perfID = scheduleQuietPerformance(server);
+        String actID = server.getActIDsForArtist(server.getArtistIDs().get(0)).get(0);
+        String otherPerfID = server.schedulePerformance(actID, "S1", "2018-04-04T16:00", "$20", "$10");
+
+        List<String> issuedIDs = new ArrayList<String>();
+        int[] seatIndexes = {DIMENSION * DIMENSION - 1, 100, 9, 64, 10, 63, DIMENSION};
+        for (int seatIndex : seatIndexes)
+        {
+            issuedIDs.add(server.issueTicket(perfID, seatIndex / DIMENSION + 1, seatIndex % DIMENSION + 1));
+        }
+        issuedIDs.addAll(server.issueTickets(perfID, List.of(seatName(200), seatName(199))));
+        check(server.issueTicket(perfID, 1, 10).startsWith("ERROR"), "a seat was sold twice");
+
+        List<String> expected = new ArrayList<String>(issuedIDs);
+        Collections.sort(expected);
+        List<String> listed = server.getTicketIDsForPerformance(perfID);
+        check(listed.equals(expected), "ticket IDs are listed as " + listed + ", expected " + expected);
+        check(new HashSet<String>(listed).size() == listed.size(), "a ticket ID was handed out twice");
+
+        String otherTicketID = server.issueTicket(otherPerfID, 1, 10);
+        check(!listed.contains(otherTicketID), "the same seat of two performances has the same ticket ID");
+        check(server.getTicketIDsForPerformance(otherPerfID).equals(List.of(otherTicketID)),
+                "the other performance lists " + server.getTicketIDsForPerformance(otherPerfID));
+        System.out.println("---------------- completed ----------------------");
+    }
+
+    /**
+     * @return Everything the server will say about its state, for comparing two servers.
+     */
+    private static List<String> describe(TBSServer server)
+    {
+        List<String> description = new ArrayList<String>(server.getTheatreIDs());
+        description.addAll(server.getArtistNames());
+        for (String artistID : server.getArtistIDs())
+        {
+            description.add("artist " + artistID);
+            for (String actID : server.getActIDsForArtist(artistID))
+            {
+                description.add("act " + actID);
+                description.addAll(server.salesReport(actID));
+                for (String perfID : server.getPerformanceIDsForAct(actID))
+                {
+                    description.addAll(server.getTicketIDsForPerformance(perfID));
+                    description.addAll(server.seatsAvailableRanges(perfID));
+                }
+            }
+        }
+        description.addAll(server.revenueByTheatre());
+        description.addAll(server.revenueByArtist());
+        description.addAll(server.revenueByDay());
+        return description;
+    }
+
+    private static void check(boolean condition, String failureMessage)
+    {
+        if (!condition)
+        {
+            System.out.println("\tFAILURE " + failureMessage);
+        }
+    }
+
+    /**
+     * @param server A server with nothing on it.
+     * @return The ID of a performance in "S1", the only theatre added to the server.
+     */
+    private static String scheduleQuietPerformance(TBSServer server) throws IOException
+    {
+        server.initialise(writeTheatreFile().toString());
+        String actID = server.addAct("Quiet Act", server.addArtist("Quiet Artist"), 90);
+        return server.schedulePerformance(actID, "S1", "2018-04-03T16:00", "$" + PREMIUM_PRICE, "$" + CHEAP_PRICE);
+    }
+
+    /**
+     * @param rowNumber A row of "S1".
+     * @param firstSeatNumber The first seat of a block in the row.
+     * @param count The number of seats in the block.
+     * @return The seats of the block, in the form returned by seatsAvailable.
+     */
+    private static List<String> seatBlock(int rowNumber, int firstSeatNumber, int count)
+    {
+        List<String> seats = new ArrayList<String>();
+        for (int i = 0; i < count; i++)
+        {
+            seats.add(rowNumber + "\t" + (firstSeatNumber + i));
+        }
+        return seats;
+    }
+
+    /**
+     * @param seatIndex The row-major index of a seat of "S1".
+     * @return The seat in the form taken by issueTickets.
+     */
+    private static String seatName(int seatIndex)
+    {
+        return (seatIndex / DIMENSION + 1) + "\t" + (seatIndex % DIMENSION + 1);
+    }
+
+    /**
+     * @param file The file to write.
+     * @param lines The lines to write in it.
+     * @return The file.
+     */
+    private static Path writeLines(Path file, String... lines) throws IOException
+    {
+        return Files.write(file, List.of(lines), StandardCharsets.UTF_8);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch)
+    {
+        try
+        {
+            latch.await();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return The path of a temporary theatre file holding the single theatre "S1".
+     */
+    private static Path writeTheatreFile() throws IOException
+    {
+        Path file = Files.createTempFile("theatres", ".csv");
+        file.toFile().deleteOnExit();
+        Files.write(file, Collections.singletonList("THEATRE\tS1\t" + DIMENSION + "\t" + DIMENSION * DIMENSION),
+                StandardCharsets.UTF_8);
+        return file;
+    }
+}
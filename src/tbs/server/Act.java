@@ -1,6 +1,9 @@
 package tbs.server;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A class representing a part of a show.
@@ -12,19 +15,24 @@ public class Act extends UniqueItem
     private final String TITLE;
     private final int DURATION; //in minutes
 
-    private UniqueItems<Performance> performances = new UniqueItems<Performance>();
+    private final NumberedItems<Performance> performances;
+
+    private final SalesTally sales = new SalesTally();
+    private final AtomicLong salesReportVersion = new AtomicLong(0); //bumped by every sale and every new performance
+    private volatile VersionedValue<List<String>> cachedSalesReport;
 
     /**
      * Create and returns an Act object.
      * @param artist The artist that is putting on this act.
-     * @param ID A unique ID.
+     * @param key A unique key.
      */
-    public Act(Artist artist, String ID, String title, int duration)
+    public Act(Artist artist, long key, String title, int duration)
     {
-        super(ID);
+        super(key);
         this.ARTIST = artist;
         this.TITLE = title;
         this.DURATION = duration;
+        this.performances = new NumberedItems<Performance>(key);
     }
 
     /**
@@ -37,6 +45,30 @@ public class Act extends UniqueItem
                 + " - Duration: " + DURATION + " minutes.";
     }
 
+    /**
+     * @return The artist that is putting on this act.
+     */
+    public Artist getArtist()
+    {
+        return ARTIST;
+    }
+
+    /**
+     * @return The title of the act.
+     */
+    public String getTitle()
+    {
+        return TITLE;
+    }
+
+    /**
+     * @return The time that the act takes, in minutes.
+     */
+    public int getDuration()
+    {
+        return DURATION;
+    }
+
     /**
      * @return The IDs of all the performances of this act.
      */
@@ -48,7 +80,7 @@ public class Act extends UniqueItem
     /**
      * @return A collection of the performances of this act.
      */
-    public UniqueItems<Performance> getPerformances()
+    public NumberedItems<Performance> getPerformances()
     {
         return performances;
     }
@@ -60,5 +92,50 @@ public class Act extends UniqueItem
     public void addPerformance(Performance performance)
     {
         performances.add(performance);
+        salesReportVersion.incrementAndGet();
+    }
+
+    /**
+     * Adds a sale from one of this act's performances to the act's totals.
+     * @param tickets The number of tickets sold.
+     * @param receipts The sum of the prices of those tickets.
+     */
+    public void recordSales(int tickets, long receipts)
+    {
+        sales.record(tickets, receipts);
+        salesReportVersion.incrementAndGet();
+    }
+
+    /**
+     * @return The running sales totals across all of this act's performances.
+     */
+    public SalesTally getSales()
+    {
+        return sales;
+    }
+
+    /**
+     * Returns one sales report line per performance, in order of performance ID. The report is cached, and is only
+     * rebuilt after a ticket has been sold or a performance has been added.
+     * @return A read-only list of sales report lines.
+     */
+    public List<String> getSalesReport()
+    {
+        long version = salesReportVersion.get();
+        VersionedValue<List<String>> cached = cachedSalesReport;
+        if (cached != null && cached.isCurrent(version))
+        {
+            return cached.getValue();
+        }
+
+        List<String> salesReport = new ArrayList<String>();
+        for (Performance performance : performances)
+        {
+            salesReport.add(performance.generateSalesReport());
+        }
+
+        List<String> readOnlyReport = Collections.unmodifiableList(salesReport);
+        cachedSalesReport = new VersionedValue<List<String>>(version, readOnlyReport);
+        return readOnlyReport;
     }
 }
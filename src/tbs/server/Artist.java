@@ -11,16 +11,17 @@ public class Artist extends UniqueItem
 {
     private String name;
     private UniqueItems<Act> acts = new UniqueItems<Act>(); //The acts that this artist is performing
+    private final SalesTally sales = new SalesTally(); //across every performance of every act
 
     /**
      * Creates and returns an Artist object.
      *
      * @param name The name of the artist.
-     * @param ID The artist's unique ID.
+     * @param key The artist's unique key.
      */
-    public Artist(String name, String ID)
+    public Artist(String name, long key)
     {
-        super(ID);
+        super(key);
         this.name = name;
     }
 
@@ -52,6 +53,14 @@ public class Artist extends UniqueItem
         return acts.getIDs();
     }
 
+    /**
+     * @return The running sales totals across every performance of this artist's acts.
+     */
+    public SalesTally getSales()
+    {
+        return sales;
+    }
+
     /**
      * Adds an act to the collection of acts this artist is putting on.
      * @param act
@@ -0,0 +1,180 @@
+package tbs.server;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An asynchronous version of the TBSServer interface. Each request returns at once with a future, which is completed
+ * with the result the matching TBSServer request would have returned, or completed exceptionally if that request
+ * would have thrown. The requests mean exactly the same as those of TBSServer, so see TBSServer for the details of
+ * their parameters and results.
+ * <p>
+ * Requests made at the same time may be carried out in any order. A caller that needs one request to see the effect
+ * of another should wait for the other's future to complete first.
+ */
+public interface AsyncTBSServer
+{
+    /**
+     * Request the server to add the theatre details found in a file.
+     * @return A future completed with the same result as TBSServer.initialise.
+     * @see TBSServer#initialise(String)
+     */
+    CompletableFuture<String> initialiseAsync(String path);
+
+    /**
+     * Request the server to add the theatre details found in several files, or in every file in a directory.
+     * @return A future completed with the same result as TBSServer.initialise.
+     * @see TBSServer#initialise(List)
+     */
+    CompletableFuture<String> initialiseAsync(List<String> paths);
+
+    /**
+     * Request a list of the IDs for all theatres.
+     * @return A future completed with the same result as TBSServer.getTheatreIDs.
+     * @see TBSServer#getTheatreIDs()
+     */
+    CompletableFuture<List<String>> getTheatreIDsAsync();
+
+    /**
+     * Request a list of the IDs for all artists.
+     * @return A future completed with the same result as TBSServer.getArtistIDs.
+     * @see TBSServer#getArtistIDs()
+     */
+    CompletableFuture<List<String>> getArtistIDsAsync();
+
+    /**
+     * Request a list of the names for all artists.
+     * @return A future completed with the same result as TBSServer.getArtistNames.
+     * @see TBSServer#getArtistNames()
+     */
+    CompletableFuture<List<String>> getArtistNamesAsync();
+
+    /**
+     * Request a list of the IDs for all acts by an artist.
+     * @return A future completed with the same result as TBSServer.getActIDsForArtist.
+     * @see TBSServer#getActIDsForArtist(String)
+     */
+    CompletableFuture<List<String>> getActIDsForArtistAsync(String artistID);
+
+    /**
+     * Request a list of the IDs for all performances of an act.
+     * @return A future completed with the same result as TBSServer.getPerformanceIDsForAct.
+     * @see TBSServer#getPerformanceIDsForAct(String)
+     */
+    CompletableFuture<List<String>> getPerformanceIDsForActAsync(String actID);
+
+    /**
+     * Request a list of the IDs for all tickets issued for a performance.
+     * @return A future completed with the same result as TBSServer.getTicketIDsForPerformance.
+     * @see TBSServer#getTicketIDsForPerformance(String)
+     */
+    CompletableFuture<List<String>> getTicketIDsForPerformanceAsync(String performanceID);
+
+    /**
+     * Request that an artist be added to the server.
+     * @return A future completed with the same result as TBSServer.addArtist.
+     * @see TBSServer#addArtist(String)
+     */
+    CompletableFuture<String> addArtistAsync(String name);
+
+    /**
+     * Request that an act be added to the server.
+     * @return A future completed with the same result as TBSServer.addAct.
+     * @see TBSServer#addAct(String, String, int)
+     */
+    CompletableFuture<String> addActAsync(String title, String artistID, int minutesDuration);
+
+    /**
+     * Request the server to schedule a performance of an act in a theatre.
+     * @return A future completed with the same result as TBSServer.schedulePerformance.
+     * @see TBSServer#schedulePerformance(String, String, String, String, String)
+     */
+    CompletableFuture<String> schedulePerformanceAsync(String actID, String theatreID, String startTimeStr,
+                                                       String premiumPriceStr, String cheapSeatsStr);
+
+    /**
+     * Request the server to issue a ticket for one seat of a performance.
+     * @return A future completed with the same result as TBSServer.issueTicket.
+     * @see TBSServer#issueTicket(String, int, int)
+     */
+    CompletableFuture<String> issueTicketAsync(String performanceID, int rowNumber, int seatNumber);
+
+    /**
+     * Request the server to issue tickets for a group of seats of a performance, as a single step.
+     * @return A future completed with the same result as TBSServer.issueTickets.
+     * @see TBSServer#issueTickets(String, List)
+     */
+    CompletableFuture<List<String>> issueTicketsAsync(String performanceID, List<String> seats);
+
+    /**
+     * Request the server to find, and optionally hold, the best block of adjacent available seats.
+     * @return A future completed with the same result as TBSServer.findBestAvailable.
+     * @see TBSServer#findBestAvailable(String, int, SeatTier, boolean)
+     */
+    CompletableFuture<List<String>> findBestAvailableAsync(String performanceID, int count, SeatTier tier,
+                                                           boolean hold);
+
+    /**
+     * Request a list of the seats that are still available for a performance.
+     * @return A future completed with the same result as TBSServer.seatsAvailable.
+     * @see TBSServer#seatsAvailable(String)
+     */
+    CompletableFuture<List<String>> seatsAvailableAsync(String performanceID);
+
+    /**
+     * Request a compact list of the seats that are still available for a performance.
+     * @return A future completed with the same result as TBSServer.seatsAvailableRanges.
+     * @see TBSServer#seatsAvailableRanges(String)
+     */
+    CompletableFuture<List<String>> seatsAvailableRangesAsync(String performanceID);
+
+    /**
+     * Request a report of the sales for an act.
+     * @return A future completed with the same result as TBSServer.salesReport.
+     * @see TBSServer#salesReport(String)
+     */
+    CompletableFuture<List<String>> salesReportAsync(String actID);
+
+    /**
+     * Request a list of the performances that start within a time range.
+     * @return A future completed with the same result as TBSServer.performancesBetween.
+     * @see TBSServer#performancesBetween(String, String, String, int, int)
+     */
+    CompletableFuture<List<String>> performancesBetweenAsync(String fromTimeStr, String toTimeStr, String theatreID,
+                                                             int offset, int limit);
+
+    /**
+     * Request a list of the times on one day when a theatre has no performance on.
+     * @return A future completed with the same result as TBSServer.freeSlots.
+     * @see TBSServer#freeSlots(String, String)
+     */
+    CompletableFuture<List<String>> freeSlotsAsync(String theatreID, String dayStr);
+
+    /**
+     * Request the sales totals for every theatre.
+     * @return A future completed with the same result as TBSServer.revenueByTheatre.
+     * @see TBSServer#revenueByTheatre()
+     */
+    CompletableFuture<List<String>> revenueByTheatreAsync();
+
+    /**
+     * Request the sales totals for every artist.
+     * @return A future completed with the same result as TBSServer.revenueByArtist.
+     * @see TBSServer#revenueByArtist()
+     */
+    CompletableFuture<List<String>> revenueByArtistAsync();
+
+    /**
+     * Request the sales totals for every day that has a performance scheduled.
+     * @return A future completed with the same result as TBSServer.revenueByDay.
+     * @see TBSServer#revenueByDay()
+     */
+    CompletableFuture<List<String>> revenueByDayAsync();
+
+    /**
+     * Request a list of strings describing the server's state, for debugging.
+     * @return A future completed with the same result as TBSServer.dump.
+     * @see TBSServer#dump()
+     */
+    CompletableFuture<List<String>> dumpAsync();
+}
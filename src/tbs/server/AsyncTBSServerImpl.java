@@ -0,0 +1,323 @@
+package tbs.server;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Carries out the requests of an AsyncTBSServer by calling a TBSServer on an executor, so callers can have many
+ * requests in flight without a thread of their own for each. The TBSServer does the work, so the results are exactly
+ * those it would give.
+ * <p>
+ * TBSServerImpl is safe to call from several threads at once, and its calls only block while waiting for a journal
+ * record to reach the disk. A few threads are enough to keep it busy, and on a server that keeps a journal, more
+ * threads let more records share each write.
+ */
+public class AsyncTBSServerImpl implements AsyncTBSServer, Closeable
+{
+    private final TBSServer server;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor; //null if the executor was supplied by the caller
+
+    /**
+     * Creates and returns an asynchronous server that calls the given server on its own bounded pool of threads.
+     * Requests that arrive while every thread is busy wait in a queue.
+     * @param server The server to carry out the requests.
+     * @param threadCount The greatest number of requests carried out at once.
+     */
+    public AsyncTBSServerImpl(TBSServer server, int threadCount)
+    {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threadCount, threadCount, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new RequestThreadFactory());
+        pool.allowCoreThreadTimeOut(true);
+        this.server = server;
+        this.executor = pool;
+        this.ownedExecutor = pool;
+    }
+
+    /**
+     * Creates and returns an asynchronous server that calls the given server on an executor supplied by the caller,
+     * such as one that starts a virtual thread per task where the platform has them. The executor is not shut down by
+     * close.
+     * @param server The server to carry out the requests.
+     * @param executor The executor to call the server on.
+     */
+    public AsyncTBSServerImpl(TBSServer server, Executor executor)
+    {
+        this.server = server;
+        this.executor = executor;
+        this.ownedExecutor = null;
+    }
+
+    /**
+     * Stops accepting requests, and lets the requests already made finish. Requests made afterwards are completed
+     * exceptionally with a RejectedExecutionException. The underlying server is not closed.
+     */
+    @Override
+    public void close()
+    {
+        if (ownedExecutor != null)
+        {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Calls the server on the executor.
+     * @param request The call to make.
+     * @return A future completed with the result of the call, or completed exceptionally if the call threw, or if the
+     * executor would not accept it.
+     */
+    private <T> CompletableFuture<T> submit(Supplier<T> request)
+    {
+        try
+        {
+            return CompletableFuture.supplyAsync(request, executor);
+        }
+        catch (RejectedExecutionException e)
+        {
+            //the caller sees the rejection through the future, the same way as a failed call
+            CompletableFuture<T> rejected = new CompletableFuture<T>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+    }
+
+    /**
+     * @see TBSServer#initialise(String)
+     */
+    @Override
+    public CompletableFuture<String> initialiseAsync(String path)
+    {
+        return submit(() -> server.initialise(path));
+    }
+
+    /**
+     * @see TBSServer#initialise(List)
+     */
+    @Override
+    public CompletableFuture<String> initialiseAsync(List<String> paths)
+    {
+        return submit(() -> server.initialise(paths));
+    }
+
+    /**
+     * @see TBSServer#getTheatreIDs()
+     */
+    @Override
+    public CompletableFuture<List<String>> getTheatreIDsAsync()
+    {
+        return submit(() -> server.getTheatreIDs());
+    }
+
+    /**
+     * @see TBSServer#getArtistIDs()
+     */
+    @Override
+    public CompletableFuture<List<String>> getArtistIDsAsync()
+    {
+        return submit(() -> server.getArtistIDs());
+    }
+
+    /**
+     * @see TBSServer#getArtistNames()
+     */
+    @Override
+    public CompletableFuture<List<String>> getArtistNamesAsync()
+    {
+        return submit(() -> server.getArtistNames());
+    }
+
+    /**
+     * @see TBSServer#getActIDsForArtist(String)
+     */
+    @Override
+    public CompletableFuture<List<String>> getActIDsForArtistAsync(String artistID)
+    {
+        return submit(() -> server.getActIDsForArtist(artistID));
+    }
+
+    /**
+     * @see TBSServer#getPerformanceIDsForAct(String)
+     */
+    @Override
+    public CompletableFuture<List<String>> getPerformanceIDsForActAsync(String actID)
+    {
+        return submit(() -> server.getPerformanceIDsForAct(actID));
+    }
+
+    /**
+     * @see TBSServer#getTicketIDsForPerformance(String)
+     */
+    @Override
+    public CompletableFuture<List<String>> getTicketIDsForPerformanceAsync(String performanceID)
+    {
+        return submit(() -> server.getTicketIDsForPerformance(performanceID));
+    }
+
+    /**
+     * @see TBSServer#addArtist(String)
+     */
+    @Override
+    public CompletableFuture<String> addArtistAsync(String name)
+    {
+        return submit(() -> server.addArtist(name));
+    }
+
+    /**
+     * @see TBSServer#addAct(String, String, int)
+     */
+    @Override
+    public CompletableFuture<String> addActAsync(String title, String artistID, int minutesDuration)
+    {
+        return submit(() -> server.addAct(title, artistID, minutesDuration));
+    }
+
+    /**
+     * @see TBSServer#schedulePerformance(String, String, String, String, String)
+     */
+    @Override
+    public CompletableFuture<String> schedulePerformanceAsync(String actID, String theatreID, String startTimeStr,
+                                                              String premiumPriceStr, String cheapSeatsStr)
+    {
+        return submit(() -> server.schedulePerformance(actID, theatreID, startTimeStr, premiumPriceStr, cheapSeatsStr));
+    }
+
+    /**
+     * @see TBSServer#issueTicket(String, int, int)
+     */
+    @Override
+    public CompletableFuture<String> issueTicketAsync(String performanceID, int rowNumber, int seatNumber)
+    {
+        return submit(() -> server.issueTicket(performanceID, rowNumber, seatNumber));
+    }
+
+    /**
+     * @see TBSServer#issueTickets(String, List)
+     */
+    @Override
+    public CompletableFuture<List<String>> issueTicketsAsync(String performanceID, List<String> seats)
+    {
+        return submit(() -> server.issueTickets(performanceID, seats));
+    }
+
+    /**
+     * @see TBSServer#findBestAvailable(String, int, SeatTier, boolean)
+     */
+    @Override
+    public CompletableFuture<List<String>> findBestAvailableAsync(String performanceID, int count, SeatTier tier,
+                                                                  boolean hold)
+    {
+        return submit(() -> server.findBestAvailable(performanceID, count, tier, hold));
+    }
+
+    /**
+     * @see TBSServer#seatsAvailable(String)
+     */
+    @Override
+    public CompletableFuture<List<String>> seatsAvailableAsync(String performanceID)
+    {
+        return submit(() -> server.seatsAvailable(performanceID));
+    }
+
+    /**
+     * @see TBSServer#seatsAvailableRanges(String)
+     */
+    @Override
+    public CompletableFuture<List<String>> seatsAvailableRangesAsync(String performanceID)
+    {
+        return submit(() -> server.seatsAvailableRanges(performanceID));
+    }
+
+    /**
+     * @see TBSServer#salesReport(String)
+     */
+    @Override
+    public CompletableFuture<List<String>> salesReportAsync(String actID)
+    {
+        return submit(() -> server.salesReport(actID));
+    }
+
+    /**
+     * @see TBSServer#performancesBetween(String, String, String, int, int)
+     */
+    @Override
+    public CompletableFuture<List<String>> performancesBetweenAsync(String fromTimeStr, String toTimeStr,
+                                                                    String theatreID, int offset, int limit)
+    {
+        return submit(() -> server.performancesBetween(fromTimeStr, toTimeStr, theatreID, offset, limit));
+    }
+
+    /**
+     * @see TBSServer#freeSlots(String, String)
+     */
+    @Override
+    public CompletableFuture<List<String>> freeSlotsAsync(String theatreID, String dayStr)
+    {
+        return submit(() -> server.freeSlots(theatreID, dayStr));
+    }
+
+    /**
+     * @see TBSServer#revenueByTheatre()
+     */
+    @Override
+    public CompletableFuture<List<String>> revenueByTheatreAsync()
+    {
+        return submit(() -> server.revenueByTheatre());
+    }
+
+    /**
+     * @see TBSServer#revenueByArtist()
+     */
+    @Override
+    public CompletableFuture<List<String>> revenueByArtistAsync()
+    {
+        return submit(() -> server.revenueByArtist());
+    }
+
+    /**
+     * @see TBSServer#revenueByDay()
+     */
+    @Override
+    public CompletableFuture<List<String>> revenueByDayAsync()
+    {
+        return submit(() -> server.revenueByDay());
+    }
+
+    /**
+     * @see TBSServer#dump()
+     */
+    @Override
+    public CompletableFuture<List<String>> dumpAsync()
+    {
+        return submit(() -> server.dump());
+    }
+
+    /**
+     * Names the pool's threads, and makes them daemon threads so an idle pool never keeps the process alive.
+     */
+    private static class RequestThreadFactory implements ThreadFactory
+    {
+        private static final AtomicInteger POOL_NUMBER = new AtomicInteger(0);
+
+        private final int poolNumber = POOL_NUMBER.getAndIncrement();
+        private final AtomicInteger threadNumber = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable task)
+        {
+            Thread thread = new Thread(task, "tbs-async-" + poolNumber + "-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
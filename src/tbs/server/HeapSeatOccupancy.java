@@ -0,0 +1,62 @@
+package tbs.server;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Seat occupancy and sales totals kept in ordinary objects on the heap.
+ */
+public class HeapSeatOccupancy extends SeatOccupancy
+{
+    private final AtomicLongArray words;
+    private final AtomicInteger ticketsSold = new AtomicInteger(0);
+    private final AtomicLong totalReceipts = new AtomicLong(0);
+
+    /**
+     * Creates and returns a HeapSeatOccupancy object with every seat free.
+     * @param seatCount The number of seats being tracked.
+     */
+    public HeapSeatOccupancy(int seatCount)
+    {
+        super(seatCount);
+        this.words = new AtomicLongArray(getWordCount());
+    }
+
+    @Override
+    public long getWord(int wordIndex)
+    {
+        return words.get(wordIndex);
+    }
+
+    @Override
+    protected long compareAndExchangeWord(int wordIndex, long expected, long replacement)
+    {
+        return words.compareAndExchange(wordIndex, expected, replacement);
+    }
+
+    @Override
+    protected void setWord(int wordIndex, long value)
+    {
+        words.set(wordIndex, value);
+    }
+
+    @Override
+    public void recordSales(int tickets, long receipts)
+    {
+        ticketsSold.addAndGet(tickets);
+        totalReceipts.addAndGet(receipts);
+    }
+
+    @Override
+    public int getTicketsSold()
+    {
+        return ticketsSold.get();
+    }
+
+    @Override
+    public long getTotalReceipts()
+    {
+        return totalReceipts.get();
+    }
+}
@@ -0,0 +1,13 @@
+package tbs.server;
+
+/**
+ * A seat store that keeps every performance's seats in ordinary objects on the heap. This is the default.
+ */
+public class HeapSeatStore implements SeatStore
+{
+    @Override
+    public SeatOccupancy allocate(int seatCount)
+    {
+        return new HeapSeatOccupancy(seatCount);
+    }
+}
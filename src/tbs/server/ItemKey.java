@@ -0,0 +1,212 @@
+package tbs.server;
+
+/**
+ * This class packs the IDs the server hands out into longs, so they can be stored, compared and looked up without
+ * strings. A top level item (an artist or act) is numbered from 0, and its key is just its number. An item that
+ * belongs to a parent (a performance of an act) has its parent's number plus one in the high 32 bits and its own
+ * number in the low 32 bits.
+ * <p>
+ * As strings, a top level key is its number ("12") and a child key is its parent's number and its own joined by a
+ * dash ("12-3"). Keys compare in the same order as their strings do, so collections ordered by key list their IDs in
+ * alphabetical order.
+ */
+public final class ItemKey
+{
+    /**
+     * Returned by parse for a string that is not a key.
+     */
+    public static final long INVALID = -1;
+
+    private static final char SEPARATOR = '-';
+    private static final long NUMBER_MASK = 0xFFFFFFFFL;
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L,
+            100000000L, 1000000000L, 10000000000L};
+
+    private ItemKey()
+    {
+    }
+
+    /**
+     * @param number The number of a top level item.
+     * @return The item's key.
+     */
+    public static long topLevel(int number)
+    {
+        return number;
+    }
+
+    /**
+     * @param parentNumber The number of the parent item.
+     * @param number The number of the child within its parent.
+     * @return The child's key.
+     */
+    public static long child(int parentNumber, int number)
+    {
+        return ((long) parentNumber + 1) << 32 | number;
+    }
+
+    /**
+     * @param key A key.
+     * @return True if the key belongs to a child item.
+     */
+    public static boolean hasParent(long key)
+    {
+        return key >>> 32 != 0;
+    }
+
+    /**
+     * @param key The key of a child item.
+     * @return The key of its parent.
+     */
+    public static long parentOf(long key)
+    {
+        return topLevel((int) ((key >>> 32) - 1));
+    }
+
+    /**
+     * @param key A key.
+     * @return The item's own number, without its parent's.
+     */
+    public static int numberOf(long key)
+    {
+        return (int) (key & NUMBER_MASK);
+    }
+
+    /**
+     * @param key A key.
+     * @return The key with the number of the item itself set to zero, which is the same for every child of a parent.
+     */
+    public static long parentBitsOf(long key)
+    {
+        return key & ~NUMBER_MASK;
+    }
+
+    /**
+     * @param key A key.
+     * @return The key as a string, as handed out by the server.
+     */
+    public static String format(long key)
+    {
+        return appendTo(new StringBuilder(24), key).toString();
+    }
+
+    /**
+     * @param builder The builder to append to.
+     * @param key A key.
+     * @return The builder, with the key appended as a string.
+     */
+    public static StringBuilder appendTo(StringBuilder builder, long key)
+    {
+        if (hasParent(key))
+        {
+            builder.append(numberOf(parentOf(key))).append(SEPARATOR);
+        }
+        return builder.append(numberOf(key));
+    }
+
+    /**
+     * Parses a key from its string without splitting the string or creating any objects.
+     * @param ID A string that may be a key, such as "12" or "12-3".
+     * @return The key, or INVALID if the string is not exactly a key formatted by format.
+     */
+    public static long parse(String ID)
+    {
+        int separator = ID.indexOf(SEPARATOR);
+        if (separator < 0)
+        {
+            long number = parseNumber(ID, 0, ID.length());
+            return number < 0 ? INVALID : topLevel((int) number);
+        }
+
+        long parentNumber = parseNumber(ID, 0, separator);
+        long number = parseNumber(ID, separator + 1, ID.length());
+        if (parentNumber < 0 || parentNumber == Integer.MAX_VALUE || number < 0)
+        {
+            return INVALID;
+        }
+        return child((int) parentNumber, (int) number);
+    }
+
+    /**
+     * @param ID The string to parse.
+     * @param start The index of the first digit.
+     * @param end The index after the last digit.
+     * @return The number, or -1 if the range is empty, is not made of digits, has a leading zero or does not fit in
+     * an int.
+     */
+    private static long parseNumber(String ID, int start, int end)
+    {
+        if (start >= end || (ID.charAt(start) == '0' && end - start > 1))
+        {
+            return -1;
+        }
+
+        long value = 0;
+        for (int i = start; i < end; i++)
+        {
+            char digit = ID.charAt(i);
+            if (digit < '0' || digit > '9')
+            {
+                return -1;
+            }
+            value = value * 10 + (digit - '0');
+            if (value > Integer.MAX_VALUE)
+            {
+                return -1;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Compares two keys in the order of their strings, using arithmetic only.
+     * @param key A key.
+     * @param otherKey Another key.
+     * @return A negative integer, zero, or a positive integer as the first key's string is less than, equal to, or
+     * greater than the second's.
+     */
+    public static int compare(long key, long otherKey)
+    {
+        //the part before any dash decides, unless one is a prefix of the other in which case the shorter comes first
+        long first = hasParent(key) ? numberOf(parentOf(key)) : numberOf(key);
+        long otherFirst = hasParent(otherKey) ? numberOf(parentOf(otherKey)) : numberOf(otherKey);
+        int result = compareDigits(first, otherFirst);
+        if (result != 0 || hasParent(key) != hasParent(otherKey))
+        {
+            return result != 0 ? result : (hasParent(key) ? 1 : -1);
+        }
+        return hasParent(key) ? compareDigits(numberOf(key), numberOf(otherKey)) : 0;
+    }
+
+    /**
+     * @param number A non-negative number.
+     * @param otherNumber Another non-negative number.
+     * @return The order of the numbers' decimal strings, so 10 comes after 1 and before 2.
+     */
+    private static int compareDigits(long number, long otherNumber)
+    {
+        int digits = digitsIn(number);
+        int otherDigits = digitsIn(otherNumber);
+
+        //pad the shorter number with zeros on the right, so both have the same number of digits
+        if (digits < otherDigits)
+        {
+            return number * POWERS_OF_TEN[otherDigits - digits] <= otherNumber ? -1 : 1;
+        }
+        if (digits > otherDigits)
+        {
+            return number < otherNumber * POWERS_OF_TEN[digits - otherDigits] ? -1 : 1;
+        }
+        return Long.compare(number, otherNumber);
+    }
+
+    private static int digitsIn(long number)
+    {
+        int digits = 1;
+        while (digits < POWERS_OF_TEN.length && number >= POWERS_OF_TEN[digits])
+        {
+            digits++;
+        }
+        return digits;
+    }
+}
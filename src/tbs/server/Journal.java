@@ -0,0 +1,642 @@
+package tbs.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A write-ahead journal of every change made to a server, so that the server's state can be rebuilt after a restart.
+ * <p>
+ * Changes are appended to an in-memory buffer, which is cheap and keeps the records in the order they were accepted.
+ * Making them durable is a separate step: the first caller to wait becomes the leader, writes every record appended
+ * so far (its own and everyone else's) and forces them to disk, while the other callers wait for it. Records that
+ * arrive during the write are left for the next leader. Under load, one fsync therefore covers a whole batch of
+ * changes rather than a single ticket.
+ * <p>
+ * The file starts with a magic number, a format version and a generation number. The generation goes up each time the
+ * journal is emptied after a snapshot, so a journal whose records are already in the snapshot is recognised and
+ * ignored, even if the process stopped between writing the snapshot and emptying the journal.
+ * <p>
+ * Each record is its payload length, a CRC-32 of the payload, and the payload itself. A record that was only partly
+ * written when the process stopped fails its length or checksum check, and it and anything after it are dropped when
+ * the journal is next opened.
+ */
+public class Journal implements Closeable
+{
+    private static final int MAGIC = 0x54425341;
+    private static final int FORMAT_VERSION = 2;
+    private static final int FILE_HEADER_BYTES = 16;
+
+    /**
+     * The generation covered by a snapshot that was not taken from a journal.
+     */
+    public static final long NO_GENERATION = -1;
+    private static final int RECORD_HEADER_BYTES = 8; //payload length, then the checksum of the payload
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    //record types
+    private static final byte THEATRES = 1;
+    private static final byte ARTIST = 2;
+    private static final byte ACT = 3;
+    private static final byte PERFORMANCE = 4;
+    private static final byte TICKETS = 5;
+
+    private final FileChannel channel; //null if the journal is disabled
+    private final CRC32 checksum = new CRC32();
+
+    //guarded by this
+    private ByteBuffer pending = ByteBuffer.allocate(BUFFER_SIZE); //records appended but not yet written
+    private ByteBuffer spare = ByteBuffer.allocate(BUFFER_SIZE); //swapped with pending by each leader
+    private int recordStart;
+    private long appendedRecords;
+    private long durableRecords;
+    private boolean flushing;
+    private IOException failure; //once writing fails, no further records are accepted
+    private long generation;
+
+    /**
+     * Creates and returns a Journal object.
+     * @param channel The channel to append to, positioned at the end of the last valid record, or null to disable the
+     * journal.
+     * @param generation The generation number in the file's header.
+     */
+    private Journal(FileChannel channel, long generation)
+    {
+        this.channel = channel;
+        this.generation = generation;
+    }
+
+    /**
+     * @return A journal that records nothing. Appending to it and waiting on it return straight away, without taking
+     * any lock, so callers on many threads never meet in it.
+     */
+    public static Journal disabled()
+    {
+        return new Journal(null, NO_GENERATION);
+    }
+
+    /**
+     * Opens a journal file, creating it if it does not exist. Every complete record already in the file is handed to
+     * the replayer, in order, before the journal is returned ready to append to.
+     *
+     * @param file The journal file.
+     * @param replayer The callback to rebuild state from the existing records.
+     * @return The open journal.
+     * @throws IOException If the file cannot be read or written, is not a journal, or holds a record the replayer
+     * cannot apply.
+     */
+    public static Journal open(Path file, JournalReplayer replayer) throws IOException
+    {
+        return open(file, replayer, NO_GENERATION);
+    }
+
+    /**
+     * Opens a journal file that continues from a snapshot, creating it if it does not exist. If the journal's records
+     * are newer than the snapshot they are handed to the replayer, in order, and if they are already in the snapshot
+     * they are dropped.
+     *
+     * @param file The journal file.
+     * @param replayer The callback to rebuild state from the existing records.
+     * @param coveredGeneration The last journal generation included in the snapshot that has been loaded, or
+     *                          NO_GENERATION if nothing has been loaded.
+     * @return The open journal.
+     * @throws IOException If the file cannot be read or written, is not a journal, continues from a later snapshot
+     * than the one loaded, or holds a record the replayer cannot apply.
+     */
+    public static Journal open(Path file, JournalReplayer replayer, long coveredGeneration) throws IOException
+    {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE);
+        try
+        {
+            long generation = coveredGeneration + 1;
+            long validEnd = FILE_HEADER_BYTES;
+            long fileGeneration = channel.size() == 0 ? NO_GENERATION : readGeneration(channel);
+            if (fileGeneration > generation)
+            {
+                throw new IOException("The journal continues from a later snapshot than the one loaded.");
+            }
+            else if (fileGeneration == generation)
+            {
+                validEnd = replay(channel, replayer);
+            }
+
+            //drop a torn record at the end, or records that are already in the snapshot, then start the new ones
+            channel.truncate(validEnd);
+            if (fileGeneration != generation)
+            {
+                writeHeader(channel, generation);
+            }
+            channel.position(validEnd);
+            return new Journal(channel, generation);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param channel A journal file.
+     * @return The generation number in the file's header.
+     * @throws IOException If the file is not a journal, or was written by an unsupported version.
+     */
+    private static long readGeneration(FileChannel channel) throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+        while (header.hasRemaining())
+        {
+            if (channel.read(header, header.position()) < 0)
+            {
+                break;
+            }
+        }
+        header.flip();
+        if (header.remaining() < FILE_HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION)
+        {
+            throw new IOException("The file is not a journal, or was written by an unsupported version.");
+        }
+        return header.getLong();
+    }
+
+    /**
+     * Writes a file header and forces it to disk.
+     * @param channel A journal file.
+     * @param generation The generation number to write.
+     */
+    private static void writeHeader(FileChannel channel, long generation) throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES).putInt(MAGIC).putInt(FORMAT_VERSION)
+                .putLong(generation);
+        header.flip();
+        while (header.hasRemaining())
+        {
+            channel.write(header, header.position());
+        }
+        channel.force(true);
+    }
+
+    /**
+     * Hands every valid record in the file to the replayer.
+     * @param channel The journal file.
+     * @param replayer The callback to hand the records to.
+     * @return The position just after the last valid record.
+     * @throws IOException If the file is not a journal, or holds a record the replayer cannot apply.
+     */
+    private static long replay(FileChannel channel, JournalReplayer replayer) throws IOException
+    {
+        if (channel.size() > Integer.MAX_VALUE)
+        {
+            throw new IOException("The journal is too large to replay.");
+        }
+
+        ByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        file.position(FILE_HEADER_BYTES);
+
+        CRC32 recordChecksum = new CRC32();
+        while (file.remaining() >= RECORD_HEADER_BYTES)
+        {
+            int recordStart = file.position();
+            int payloadLength = file.getInt();
+            int expectedChecksum = file.getInt();
+            if (payloadLength <= 0 || payloadLength > file.remaining())
+            {
+                return recordStart;
+            }
+
+            ByteBuffer payload = file.slice();
+            payload.limit(payloadLength);
+            recordChecksum.reset();
+            recordChecksum.update(payload.duplicate());
+            if ((int) recordChecksum.getValue() != expectedChecksum)
+            {
+                return recordStart;
+            }
+
+            try
+            {
+                replayRecord(payload, replayer);
+            }
+            catch (RuntimeException e)
+            {
+                throw new IOException("The journal record at position " + recordStart + " could not be replayed.", e);
+            }
+            file.position(file.position() + payloadLength);
+        }
+        return file.position();
+    }
+
+    /**
+     * Decodes one record and hands it to the replayer.
+     * @param payload The record's payload.
+     * @param replayer The callback to hand the record to.
+     */
+    private static void replayRecord(ByteBuffer payload, JournalReplayer replayer)
+    {
+        byte type = payload.get();
+        switch (type)
+        {
+            case THEATRES:
+                int theatreCount = payload.getInt();
+                for (int i = 0; i < theatreCount; i++)
+                {
+                    replayer.replayTheatre(getString(payload), payload.getInt(), payload.getInt());
+                }
+                break;
+            case ARTIST:
+                replayer.replayArtist(getString(payload), getString(payload));
+                break;
+            case ACT:
+                replayer.replayAct(getString(payload), getString(payload), getString(payload), payload.getInt());
+                break;
+            case PERFORMANCE:
+                replayer.replayPerformance(getString(payload), getString(payload), getString(payload),
+                        getString(payload), getString(payload), getString(payload));
+                break;
+            case TICKETS:
+                String performanceID = getString(payload);
+                int[] seatIndexes = new int[payload.getInt()];
+                for (int i = 0; i < seatIndexes.length; i++)
+                {
+                    seatIndexes[i] = payload.getInt();
+                }
+                replayer.replayTickets(performanceID, seatIndexes);
+                break;
+            default:
+                throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+
+    /**
+     * Appends a record of theatres loaded together. They are replayed together too, so a load that was cut short is
+     * never half replayed.
+     * @param theatres The theatres.
+     * @return The sequence number of the record, to wait on with awaitDurable.
+     * @throws IOException If an earlier write to the journal failed.
+     */
+    public long appendTheatres(List<Theatre> theatres) throws IOException
+    {
+        if (channel == null)
+        {
+            return 0;
+        }
+
+        synchronized (this)
+        {
+            beginRecord(THEATRES);
+            putInt(theatres.size());
+            for (Theatre theatre : theatres)
+            {
+                putString(theatre.getID());
+                putInt(theatre.getNumRows());
+                putInt(theatre.getFloorArea());
+            }
+            return endRecord();
+        }
+    }
+
+    /**
+     * Appends a record of a new artist.
+     * @param ID The artist's ID.
+     * @param name The artist's name.
+     * @return The sequence number of the record, to wait on with awaitDurable.
+     * @throws IOException If an earlier write to the journal failed.
+     */
+    public long appendArtist(String ID, String name) throws IOException
+    {
+        if (channel == null)
+        {
+            return 0;
+        }
+
+        synchronized (this)
+        {
+            beginRecord(ARTIST);
+            putString(ID);
+            putString(name);
+            return endRecord();
+        }
+    }
+
+    /**
+     * Appends a record of a new act.
+     * @param ID The act's ID.
+     * @param title The act's title.
+     * @param artistID The ID of the artist putting on the act.
+     * @param minutesDuration The time that the act takes in minutes.
+     * @return The sequence number of the record, to wait on with awaitDurable.
+     * @throws IOException If an earlier write to the journal failed.
+     */
+    public long appendAct(String ID, String title, String artistID, int minutesDuration)
+            throws IOException
+    {
+        if (channel == null)
+        {
+            return 0;
+        }
+
+        synchronized (this)
+        {
+            beginRecord(ACT);
+            putString(ID);
+            putString(title);
+            putString(artistID);
+            putInt(minutesDuration);
+            return endRecord();
+        }
+    }
+
+    /**
+     * Appends a record of a newly scheduled performance.
+     * @param ID The performance's ID.
+     * @param actID The ID of the act the performance is part of.
+     * @param theatreID The ID of the theatre the performance is held in.
+     * @param startTime The start time, in the format yyyy-mm-ddThh:mm.
+     * @param premiumPrice The price of the premium seats, in the format $d.
+     * @param cheapPrice The price of the cheap seats, in the format $d.
+     * @return The sequence number of the record, to wait on with awaitDurable.
+     * @throws IOException If an earlier write to the journal failed.
+     */
+    public long appendPerformance(String ID, String actID, String theatreID, String startTime,
+                                  String premiumPrice, String cheapPrice) throws IOException
+    {
+        if (channel == null)
+        {
+            return 0;
+        }
+
+        synchronized (this)
+        {
+            beginRecord(PERFORMANCE);
+            putString(ID);
+            putString(actID);
+            putString(theatreID);
+            putString(startTime);
+            putString(premiumPrice);
+            putString(cheapPrice);
+            return endRecord();
+        }
+    }
+
+    /**
+     * Appends a record of tickets issued in a single step.
+     * @param performanceID The ID of the performance the tickets are for.
+     * @param seatIndexes The row-major indexes of the seats.
+     * @return The sequence number of the record, to wait on with awaitDurable.
+     * @throws IOException If an earlier write to the journal failed.
+     */
+    public long appendTickets(String performanceID, int[] seatIndexes) throws IOException
+    {
+        if (channel == null)
+        {
+            return 0;
+        }
+
+        synchronized (this)
+        {
+            beginRecord(TICKETS);
+            putString(performanceID);
+            putInt(seatIndexes.length);
+            for (int seatIndex : seatIndexes)
+            {
+                putInt(seatIndex);
+            }
+            return endRecord();
+        }
+    }
+
+    /**
+     * Waits until the record with the given sequence number, and every record before it, is on disk. If no write is
+     * in progress, the caller writes every pending record itself.
+     *
+     * @param sequence A sequence number returned by one of the append methods.
+     * @throws IOException If the records could not be written, or the thread was interrupted while waiting.
+     */
+    public void awaitDurable(long sequence) throws IOException
+    {
+        if (channel == null)
+        {
+            return;
+        }
+
+        while (true)
+        {
+            ByteBuffer batch;
+            long batchEnd;
+            synchronized (this)
+            {
+                while (durableRecords < sequence && flushing && failure == null)
+                {
+                    try
+                    {
+                        wait();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting for the journal.");
+                    }
+                }
+                if (durableRecords >= sequence)
+                {
+                    return;
+                }
+                if (failure != null)
+                {
+                    throw new IOException("The journal could not be written.", failure);
+                }
+
+                //become the leader, and take every record appended so far
+                flushing = true;
+                batch = pending;
+                batchEnd = appendedRecords;
+                pending = spare;
+                spare = null;
+            }
+
+            IOException error = null;
+            try
+            {
+                batch.flip();
+                while (batch.hasRemaining())
+                {
+                    channel.write(batch);
+                }
+                channel.force(false);
+            }
+            catch (IOException e)
+            {
+                error = e;
+            }
+
+            synchronized (this)
+            {
+                batch.clear();
+                spare = batch;
+                flushing = false;
+                if (error == null)
+                {
+                    durableRecords = batchEnd;
+                }
+                else
+                {
+                    failure = error;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * @return True if records are written to a file, false if the journal was created by disabled.
+     */
+    public boolean isEnabled()
+    {
+        return channel != null;
+    }
+
+    /**
+     * @return The generation number of the journal's records, or NO_GENERATION if the journal is disabled.
+     */
+    public synchronized long getGeneration()
+    {
+        return generation;
+    }
+
+    /**
+     * Empties the journal once every record in it has been saved in a snapshot, and moves it on to the next
+     * generation. Nothing should be appended until it returns.
+     * @throws IOException If the pending records could not be written or the file could not be emptied.
+     */
+    public void reset() throws IOException
+    {
+        if (channel == null)
+        {
+            return;
+        }
+
+        long lastRecord;
+        synchronized (this)
+        {
+            lastRecord = appendedRecords;
+        }
+        awaitDurable(lastRecord);
+
+        synchronized (this)
+        {
+            //empty the file before moving on a generation, so stopping in between never replays a saved record
+            channel.truncate(FILE_HEADER_BYTES);
+            channel.force(true);
+            generation++;
+            writeHeader(channel, generation);
+            channel.position(FILE_HEADER_BYTES);
+        }
+    }
+
+    /**
+     * Writes any pending records and closes the file.
+     * @throws IOException If the records could not be written or the file could not be closed.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (channel == null)
+        {
+            return;
+        }
+
+        long lastRecord;
+        synchronized (this)
+        {
+            lastRecord = appendedRecords;
+        }
+        try
+        {
+            awaitDurable(lastRecord);
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+
+    /**
+     * Starts a record in the pending buffer, leaving room for its header. The journal must be enabled.
+     * @param type The type of the record.
+     * @throws IOException If an earlier write to the journal failed.
+     */
+    private void beginRecord(byte type) throws IOException
+    {
+        if (failure != null)
+        {
+            throw new IOException("The journal could not be written.", failure);
+        }
+
+        ensureRoom(RECORD_HEADER_BYTES + 1);
+        recordStart = pending.position();
+        pending.position(recordStart + RECORD_HEADER_BYTES);
+        pending.put(type);
+    }
+
+    /**
+     * Fills in the header of the record started by beginRecord.
+     * @return The sequence number of the record.
+     */
+    private long endRecord()
+    {
+        int payloadStart = recordStart + RECORD_HEADER_BYTES;
+        ByteBuffer payload = pending.duplicate();
+        payload.position(payloadStart);
+        payload.limit(pending.position());
+        checksum.reset();
+        checksum.update(payload);
+
+        pending.putInt(recordStart, pending.position() - payloadStart);
+        pending.putInt(recordStart + 4, (int) checksum.getValue());
+        return ++appendedRecords;
+    }
+
+    private void putInt(int value)
+    {
+        ensureRoom(4);
+        pending.putInt(value);
+    }
+
+    private void putString(String value)
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensureRoom(4 + bytes.length);
+        pending.putInt(bytes.length);
+        pending.put(bytes);
+    }
+
+    private static String getString(ByteBuffer payload)
+    {
+        byte[] bytes = new byte[payload.getInt()];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Grows the pending buffer if it does not have room for the given number of bytes.
+     * @param bytes The number of bytes about to be put.
+     */
+    private void ensureRoom(int bytes)
+    {
+        if (pending.remaining() < bytes)
+        {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+    }
+}
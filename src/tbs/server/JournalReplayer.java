@@ -0,0 +1,46 @@
+package tbs.server;
+
+/**
+ * A callback that is handed the records of a journal one at a time, in the order they were written. Each record is a
+ * change that was accepted by the server, together with the IDs it was given at the time.
+ */
+public interface JournalReplayer
+{
+    /**
+     * @param ID The ID of a theatre that was loaded.
+     * @param numRows The seating dimension of the theatre.
+     * @param floorArea The floor area of the theatre in square metres.
+     */
+    void replayTheatre(String ID, int numRows, int floorArea);
+
+    /**
+     * @param ID The ID of an artist that was added.
+     * @param name The name of the artist.
+     */
+    void replayArtist(String ID, String name);
+
+    /**
+     * @param ID The ID of an act that was added.
+     * @param title The title of the act.
+     * @param artistID The ID of the artist putting on the act.
+     * @param minutesDuration The time that the act takes in minutes.
+     */
+    void replayAct(String ID, String title, String artistID, int minutesDuration);
+
+    /**
+     * @param ID The ID of a performance that was scheduled.
+     * @param actID The ID of the act the performance is part of.
+     * @param theatreID The ID of the theatre the performance is held in.
+     * @param startTime The start time of the performance, in the format yyyy-mm-ddThh:mm.
+     * @param premiumPrice The price of the premium seats, in the format $d.
+     * @param cheapPrice The price of the cheap seats, in the format $d.
+     */
+    void replayPerformance(String ID, String actID, String theatreID, String startTime, String premiumPrice,
+                           String cheapPrice);
+
+    /**
+     * @param performanceID The ID of the performance that tickets were issued for.
+     * @param seatIndexes The row-major indexes of the seats, all issued in a single step.
+     */
+    void replayTickets(String performanceID, int[] seatIndexes);
+}
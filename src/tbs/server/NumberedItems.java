@@ -0,0 +1,102 @@
+package tbs.server;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * This class represents a collection of items that the server numbers itself, such as artists, acts, or the
+ * performances of one act. It hands out the keys of new items, and finds an item by indexing an array with the number
+ * in its key, so neither handing out an ID nor looking one up has to build or hash a string.
+ * @param <E> An object with the UniqueItem type, created with a key from nextKey.
+ */
+public class NumberedItems<E extends UniqueItem> extends UniqueItems<E>
+{
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final long parentBits; //the high half shared by every key in the collection
+    private final AtomicInteger nextNumber = new AtomicInteger(0);
+    private volatile AtomicReferenceArray<E> itemsByNumber = new AtomicReferenceArray<E>(INITIAL_CAPACITY);
+
+    /**
+     * Creates an empty collection of top level items.
+     */
+    public NumberedItems()
+    {
+        this.parentBits = ItemKey.topLevel(0);
+    }
+
+    /**
+     * Creates an empty collection of the children of one item.
+     * @param parentKey The key of the top level item the children belong to.
+     */
+    public NumberedItems(long parentKey)
+    {
+        this.parentBits = ItemKey.child(ItemKey.numberOf(parentKey), 0);
+    }
+
+    /**
+     * Hands out a new key. Keys are handed out in increasing order, and a key is never handed out twice, even if no
+     * item with it has been added yet.
+     * @return A new unique key.
+     */
+    public long nextKey()
+    {
+        return parentBits | nextNumber.getAndIncrement();
+    }
+
+    /**
+     * Indexes a newly added element by the number in its key. Elements restored from a journal or snapshot arrive
+     * with keys that were handed out by an earlier server, so the next key handed out is moved past them.
+     * @param uniqueObj The element, which is already in the ordered set.
+     */
+    @Override
+    protected synchronized void index(E uniqueObj)
+    {
+        int number = ItemKey.numberOf(uniqueObj.getKey());
+        nextNumber.accumulateAndGet(number + 1, Math::max);
+
+        AtomicReferenceArray<E> index = itemsByNumber;
+        if (number >= index.length())
+        {
+            //keys are handed out densely, so doubling keeps the array at most twice the size of the collection
+            AtomicReferenceArray<E> grown = new AtomicReferenceArray<E>(Math.max(index.length() * 2, number + 1));
+            for (int i = 0; i < index.length(); i++)
+            {
+                grown.set(i, index.get(i));
+            }
+            grown.set(number, uniqueObj);
+            itemsByNumber = grown;
+            return;
+        }
+        index.set(number, uniqueObj);
+    }
+
+    /**
+     * Finds a particular object by its key.
+     * @param key The key used to search for the object.
+     * @return The object with the key, or null if there is none.
+     */
+    public E findByKey(long key)
+    {
+        if (ItemKey.parentBitsOf(key) != parentBits)
+        {
+            return null;
+        }
+
+        int number = ItemKey.numberOf(key);
+        AtomicReferenceArray<E> index = itemsByNumber;
+        return number >= 0 && number < index.length() ? index.get(number) : null;
+    }
+
+    /**
+     * Finds a particular object by its ID.
+     * @param ID The ID used to search for the object.
+     * @return The object associated with the ID, or null if the ID is not the ID of an object in this collection.
+     */
+    @Override
+    public E findByID(String ID)
+    {
+        long key = ItemKey.parse(ID);
+        return key == ItemKey.INVALID ? null : findByKey(key);
+    }
+}
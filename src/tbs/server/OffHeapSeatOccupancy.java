@@ -0,0 +1,95 @@
+package tbs.server;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Seat occupancy and sales totals kept in a segment of a buffer outside the heap. The segment holds the number of
+ * tickets sold and the total receipts as two longs, followed by the words of seats. Every access goes through a
+ * VarHandle, so the atomic operations are the same as for the heap version.
+ */
+public class OffHeapSeatOccupancy extends SeatOccupancy
+{
+    /**
+     * The number of bytes at the start of each segment taken up by the sales totals.
+     */
+    public static final int HEADER_BYTES = 2 * Long.BYTES;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.nativeOrder());
+    private static final int TICKETS_SOLD_OFFSET = 0;
+    private static final int TOTAL_RECEIPTS_OFFSET = Long.BYTES;
+
+    private final ByteBuffer buffer;
+    private final int segmentStart;
+
+    /**
+     * Creates and returns an OffHeapSeatOccupancy object over a segment that is all zeros, so every seat is free.
+     * @param seatCount The number of seats being tracked.
+     * @param buffer A direct or mapped buffer, whose address is a multiple of 8.
+     * @param segmentStart The offset of the segment in the buffer, a multiple of 8.
+     */
+    public OffHeapSeatOccupancy(int seatCount, ByteBuffer buffer, int segmentStart)
+    {
+        super(seatCount);
+        this.buffer = buffer;
+        this.segmentStart = segmentStart;
+    }
+
+    /**
+     * @param seatCount A number of seats.
+     * @return The size of the segment needed for that many seats.
+     */
+    public static int segmentBytes(int seatCount)
+    {
+        return HEADER_BYTES + wordsFor(seatCount) * Long.BYTES;
+    }
+
+    /**
+     * @param wordIndex The index of a word.
+     * @return The offset of the word in the buffer.
+     */
+    private int wordOffset(int wordIndex)
+    {
+        return segmentStart + HEADER_BYTES + (wordIndex << 3);
+    }
+
+    @Override
+    public long getWord(int wordIndex)
+    {
+        return (long) LONGS.getVolatile(buffer, wordOffset(wordIndex));
+    }
+
+    @Override
+    protected long compareAndExchangeWord(int wordIndex, long expected, long replacement)
+    {
+        return (long) LONGS.compareAndExchange(buffer, wordOffset(wordIndex), expected, replacement);
+    }
+
+    @Override
+    protected void setWord(int wordIndex, long value)
+    {
+        LONGS.setVolatile(buffer, wordOffset(wordIndex), value);
+    }
+
+    @Override
+    public void recordSales(int tickets, long receipts)
+    {
+        LONGS.getAndAdd(buffer, segmentStart + TICKETS_SOLD_OFFSET, (long) tickets);
+        LONGS.getAndAdd(buffer, segmentStart + TOTAL_RECEIPTS_OFFSET, receipts);
+    }
+
+    @Override
+    public int getTicketsSold()
+    {
+        return (int) (long) LONGS.getVolatile(buffer, segmentStart + TICKETS_SOLD_OFFSET);
+    }
+
+    @Override
+    public long getTotalReceipts()
+    {
+        return (long) LONGS.getVolatile(buffer, segmentStart + TOTAL_RECEIPTS_OFFSET);
+    }
+}
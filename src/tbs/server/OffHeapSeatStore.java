@@ -0,0 +1,106 @@
+package tbs.server;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A seat store that keeps every performance's seats outside the heap, either in direct memory or in a memory-mapped
+ * file. Performances are given segments one after another, in the order they are created, out of large chunks, so
+ * the garbage collector sees a handful of chunks however many performances there are, and heap use stays flat.
+ * <p>
+ * Chunks start small and double in size up to a limit, so a small catalog does not reserve a lot of memory up front.
+ * A mapped file holds the current state of the seats but is not a snapshot; it is emptied each time the store is
+ * opened.
+ */
+public class OffHeapSeatStore implements SeatStore
+{
+    private static final int FIRST_CHUNK_BYTES = 1024 * 1024;
+    private static final int MAX_CHUNK_BYTES = 64 * 1024 * 1024;
+
+    private final FileChannel backingFile; //null for direct memory
+
+    //guarded by this
+    private ByteBuffer chunk;
+    private int chunkBytes = FIRST_CHUNK_BYTES;
+    private int nextSegment;
+    private long fileEnd;
+
+    /**
+     * Creates and returns a store that keeps seats in direct memory.
+     */
+    public OffHeapSeatStore()
+    {
+        this.backingFile = null;
+    }
+
+    /**
+     * Creates and returns a store that keeps seats in a memory-mapped file, so that the operating system can page
+     * them out.
+     * @param backingPath The path of the file. Anything already in it is discarded.
+     * @throws IOException If the file cannot be opened.
+     */
+    public OffHeapSeatStore(String backingPath) throws IOException
+    {
+        this.backingFile = FileChannel.open(Paths.get(backingPath), StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    @Override
+    public synchronized SeatOccupancy allocate(int seatCount)
+    {
+        int segmentBytes = OffHeapSeatOccupancy.segmentBytes(seatCount);
+        if (chunk == null || chunk.capacity() - nextSegment < segmentBytes)
+        {
+            chunk = newChunk(Math.max(chunkBytes, segmentBytes));
+            chunkBytes = Math.min(chunkBytes * 2, MAX_CHUNK_BYTES);
+            nextSegment = 0;
+        }
+
+        SeatOccupancy occupancy = new OffHeapSeatOccupancy(seatCount, chunk, nextSegment);
+        nextSegment += segmentBytes; //segments are a whole number of words, so the next one stays aligned
+        return occupancy;
+    }
+
+    /**
+     * @param bytes The size of the chunk.
+     * @return A new chunk, filled with zeros and aligned for atomic access to longs.
+     */
+    private ByteBuffer newChunk(int bytes)
+    {
+        try
+        {
+            ByteBuffer newChunk;
+            if (backingFile == null)
+            {
+                newChunk = ByteBuffer.allocateDirect(bytes + Long.BYTES);
+            }
+            else
+            {
+                newChunk = backingFile.map(FileChannel.MapMode.READ_WRITE, fileEnd, bytes + Long.BYTES);
+                fileEnd += bytes + Long.BYTES;
+            }
+            return newChunk.alignedSlice(Long.BYTES);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Closes the backing file, if there is one. Direct memory is freed once the store is no longer referenced.
+     * @throws IOException If the backing file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (backingFile != null)
+        {
+            backingFile.close();
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package tbs.server;
 
+import java.nio.LongBuffer;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A class representing a performance. Performances make up acts, which are performed by artists.
@@ -10,59 +14,47 @@ public class Performance extends UniqueItem
 {
     private int cheapSeatPrice;
     private int premiuimSeatPrice;
-    private int numTicketsSold = 0;
-    private int totalSalesReceipt = 0;
+    private final AtomicLong salesVersion = new AtomicLong(0); //bumped after every sale, once the totals are updated
+    private volatile VersionedValue<String> cachedSalesReport;
 
     private String startTime;
+    private final long startMinute; //minutes since 1970-01-01T00:00, for ordering and range queries
     private Act act;
     private Theatre theatre;
+    private final SalesTally daySales; //shared by every performance starting on the same day
 
-    private UniqueItems<Seat> seats = new UniqueItems<Seat>();
-
-    private Seat[][] seatArray;
-
-    private List<String> issuedTicketIDs = new ArrayList<String>();
-
+    private final SeatingLayout layout; //shared with every other performance in the same theatre
+    private final SeatOccupancy occupancy; //one bit per seat in row-major order, and the ticket sales totals
+    private final String seatIDPrefix; //this performance's ID and the separator, shared by every seat ID
 
     /**
      * Creates and returns a performance object.
      *
      * @param act The act that this performance is part of.
      * @param theatre The theatre this this performance will performed at.
-     * @param ID The unique identifier of this performance.
-     * @param startTime The time that this performance will begin.
+     * @param key The unique key of this performance, a child of the act's key.
+     * @param startTime The time that this performance will begin, in the format yyyy-mm-ddThh:mm.
+     * @param startMinute The same time, as parsed by StartTime.
      * @param premiumPrice The cost of attending this performance in an expensive seat.
      * @param cheapPrice The cost of attending this performance in a basic seat.
+     * @param daySales The sales totals for the day this performance starts on.
+     * @param occupancy Where to keep the state of the seats, with every seat free.
      */
-    public Performance(Act act, Theatre theatre, String ID, String startTime, String premiumPrice, String cheapPrice)
+    public Performance(Act act, Theatre theatre, long key, String startTime, long startMinute, String premiumPrice,
+                       String cheapPrice, SalesTally daySales, SeatOccupancy occupancy)
     {
-        super(ID);
+        super(key);
         this.act = act;
         this.theatre = theatre;
+        this.daySales = daySales;
         this.startTime = startTime;
+        this.startMinute = startMinute;
         this.cheapSeatPrice = priceToInteger(cheapPrice);
         this.premiuimSeatPrice = priceToInteger(premiumPrice);
 
-        int numRows = this.theatre.getNumRows();
-        int currentPrice = premiuimSeatPrice;
-        int firstCheapRow = (numRows / 2) + 1;
-        seatArray = new Seat[numRows][numRows];
-
-        for (int row = 0; row < numRows; row++)
-        {
-            if(row == firstCheapRow - 1)
-            {
-                currentPrice = cheapSeatPrice;
-            }
-
-            for (int col = 0; col < numRows; col++)
-            {
-                String seatID = getSeats().generateID(true, getID());
-                Seat newSeat = new Seat(seatID, row + 1, col + 1, currentPrice);
-                getSeats().add(newSeat);
-                seatArray[row][col] = newSeat;
-            }
-        }
+        this.layout = this.theatre.getLayout();
+        this.occupancy = occupancy;
+        this.seatIDPrefix = getID() + '-';
     }
     /**
      * @return A string representation of the object.
@@ -85,30 +77,153 @@ public class Performance extends UniqueItem
     }
 
     /**
-     * @return A collection of seats for this performance.
+     * Seats are numbered row by row, so a seat's ID follows directly from its position.
+     * @param seatIndex The row-major index of a seat.
+     * @return The unique ID of the seat.
      */
-    private UniqueItems<Seat> getSeats()
+    private String seatID(int seatIndex)
     {
-        return seats;
+        return seatIDPrefix.concat(Integer.toString(seatIndex));
     }
 
     /**
-     * @return A list of seats (represented as Strings) that are available to be purchased.
+     * @param tier A price tier.
+     * @return The price of every seat in the given tier for this performance.
+     */
+    public int getPrice(SeatTier tier)
+    {
+        return tier == SeatTier.PREMIUM ? premiuimSeatPrice : cheapSeatPrice;
+    }
+
+    /**
+     * @return A list of seats (represented as Strings) that are available to be purchased, in row order.
      */
     public List<String> getAvailableSeats()
     {
         List<String> availableSeats = new ArrayList<String>();
-        for (Seat seat : getSeats())
+        visitAvailableSeats((rowNumber, seatNumber) -> availableSeats.add("" + rowNumber + "\t" + seatNumber));
+        return availableSeats;
+    }
+
+    /**
+     * Hands every available seat to the visitor in row order, without creating any objects per seat.
+     * @param visitor The callback to receive the seats. It can stop the visit early by returning false.
+     * @return False if the visitor stopped early, true otherwise.
+     */
+    public boolean visitAvailableSeats(SeatVisitor visitor)
+    {
+        return visitAvailableRanges((rowNumber, firstSeatNumber, lastSeatNumber) -> {
+            for (int seatNumber = firstSeatNumber; seatNumber <= lastSeatNumber; seatNumber++)
+            {
+                if (!visitor.visitSeat(rowNumber, seatNumber))
+                {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Hands every run of adjacent available seats to the visitor in row order. Runs are found a word of the occupancy
+     * bitset at a time, so a mostly empty or mostly full performance is visited quickly.
+     * @param visitor The callback to receive the runs. It can stop the visit early by returning false.
+     * @return False if the visitor stopped early, true otherwise.
+     */
+    public boolean visitAvailableRanges(SeatRangeVisitor visitor)
+    {
+        int numRows = layout.getNumRows();
+        int runStart = occupancy.nextFree(0);
+        while (runStart >= 0)
         {
-            //if the ticket has not been issued, add the appropriate info to the list
-            if (!seat.ticketIsIssued())
+            //a run of free seats may carry on into the next row, so cut it at the end of the row
+            int rowStart = runStart - runStart % numRows;
+            int runEnd = Math.min(occupancy.nextTaken(runStart), rowStart + numRows);
+            if (!visitor.visitRange(layout.rowNumberOf(runStart), layout.seatNumberOf(runStart),
+                    layout.seatNumberOf(runEnd - 1)))
             {
-                String currentSeatPosition = "" + seat.getRowNumber() + "\t" + seat.getSeatNumber();
-                availableSeats.add(currentSeatPosition);
+                return false;
             }
+            runStart = occupancy.nextFree(runEnd);
         }
+        return true;
+    }
 
-        return availableSeats;
+    /**
+     * @return The seating layout of the theatre this performance takes place in.
+     */
+    public SeatingLayout getLayout()
+    {
+        return layout;
+    }
+
+    /**
+     * @return The time that this performance will begin, in the format yyyy-mm-ddThh:mm.
+     */
+    public String getStartTime()
+    {
+        return startTime;
+    }
+
+    /**
+     * @return The time that this performance will begin, in minutes since 1970-01-01T00:00.
+     */
+    public long getStartMinute()
+    {
+        return startMinute;
+    }
+
+    /**
+     * @return The time that this performance will end, in minutes since 1970-01-01T00:00.
+     */
+    public long getEndMinute()
+    {
+        return startMinute + act.getDuration();
+    }
+
+    /**
+     * @return The number of tickets sold for this performance.
+     */
+    public int getTicketsSold()
+    {
+        return occupancy.getTicketsSold();
+    }
+
+    /**
+     * @return The sum of the prices of the tickets sold for this performance.
+     */
+    public long getTotalReceipts()
+    {
+        return occupancy.getTotalReceipts();
+    }
+
+    /**
+     * @return The record of which seats have had their tickets issued.
+     */
+    public SeatOccupancy getOccupancy()
+    {
+        return occupancy;
+    }
+
+    /**
+     * Restores the seats and sales of a performance that has just been created, as when a snapshot is loaded. The
+     * sales are added to the totals of the act, artist, theatre and day as well.
+     * @param occupancyWords The saved seat occupancy, as packed by SeatOccupancy.
+     * @param ticketsSold The number of tickets that had been sold.
+     * @param totalReceipts The sum of the prices of those tickets.
+     */
+    public void restoreSeats(LongBuffer occupancyWords, int ticketsSold, long totalReceipts)
+    {
+        occupancy.restore(occupancyWords);
+        recordSales(ticketsSold, totalReceipts);
+    }
+
+    /**
+     * @return The act that this performance is part of.
+     */
+    public Act getAct()
+    {
+        return act;
     }
 
     /**
@@ -120,43 +235,224 @@ public class Performance extends UniqueItem
     }
 
     /**
-     * Returns the seat from the given location.
+     * Returns the seat from the given location. The seat is a snapshot of its current state, and is created on demand.
      * @param rowNumber The row the seat is located in.
      * @param seatNumber The column the seat is located in, or how far down the row the seat is.
      * @return A seat object at the given location.
      */
     public Seat findSeatByLocation(int rowNumber, int seatNumber)
     {
-        return seatArray[rowNumber - 1][seatNumber - 1];
+        int seatIndex = layout.seatIndex(rowNumber, seatNumber);
+        return new Seat(seatID(seatIndex), rowNumber, seatNumber, getPrice(layout.tierOfRow(rowNumber)),
+                occupancy.isTaken(seatIndex));
+    }
+
+    /**
+     * Issues a ticket for the seat at the given location, and record appropiate stats. Safe to call from several
+     * threads at once: exactly one caller wins each seat.
+     * @param rowNumber The row the seat is located in.
+     * @param seatNumber The column the seat is located in, or how far down the row the seat is.
+     * @return The ID of the new ticket, or null if the ticket for the seat has already been issued.
+     */
+    public String issueTicket(int rowNumber, int seatNumber)
+    {
+        int seatIndex = layout.seatIndex(rowNumber, seatNumber);
+        if (!occupancy.take(seatIndex))
+        {
+            return null;
+        }
+
+        recordSales(1, getPrice(layout.tierOfRow(rowNumber)));
+        return seatID(seatIndex);
     }
 
     /**
-     * Issues a ticket for a seat, and record appropiate stats.
-     * @param seat The seat that has been purchased.
+     * Issues the tickets for a group of seats as a single step: either every seat is issued, or none of them are. A
+     * seat of a group that fails is never refused to anyone else because of it.
+     * @param seatIndexes The row-major indexes of the seats. They must all be valid for this performance's layout.
+     * @return The IDs of the new tickets, in the same order as the seats, or null if any of the seats had already been
+     * taken or the same seat was asked for twice.
      */
-    public void issueTicket(Seat seat)
+    public List<String> issueTickets(int[] seatIndexes)
     {
-        seat.issueTicket();
-        numTicketsSold++;
-        totalSalesReceipt += seat.getPrice();
-        issuedTicketIDs.add(seat.getTicketID());
+        if (!occupancy.takeAll(seatIndexes))
+        {
+            return null;
+        }
+
+        List<String> ticketIDs = new ArrayList<String>(seatIndexes.length);
+        long receipts = 0;
+        for (int seatIndex : seatIndexes)
+        {
+            receipts += getPrice(layout.tierOfRow(layout.rowNumberOf(seatIndex)));
+            ticketIDs.add(seatID(seatIndex));
+        }
+        recordSales(seatIndexes.length, receipts);
+        return ticketIDs;
+    }
+
+    /**
+     * Adds a sale to this performance's totals, and to the totals of its act, artist, theatre and day. Also marks the
+     * cached sales report as out of date.
+     * @param tickets The number of tickets sold.
+     * @param receipts The sum of the prices of those tickets.
+     */
+    private void recordSales(int tickets, long receipts)
+    {
+        occupancy.recordSales(tickets, receipts);
+        salesVersion.incrementAndGet();
+        act.recordSales(tickets, receipts);
+        act.getArtist().getSales().record(tickets, receipts);
+        theatre.getSales().record(tickets, receipts);
+        daySales.record(tickets, receipts);
+    }
+
+    /**
+     * Finds the best block of adjacent free seats in a price tier. The best block is in the row closest to the stage
+     * that has room for it, and is the block in that row closest to the middle of the row.
+     * <p>
+     * The search jumps from one run of free seats to the next a word at a time, rather than looking at every seat.
+     *
+     * @param count The number of adjacent seats wanted.
+     * @param tier The price tier the seats must be in.
+     * @return The row-major index of the first seat of the block, or -1 if no row in the tier has room.
+     */
+    public int findBestAvailable(int count, SeatTier tier)
+    {
+        int numRows = layout.getNumRows();
+        int centredOffset = (numRows - count) / 2;
+
+        for (int rowNumber = layout.firstRowOf(tier); rowNumber <= layout.lastRowOf(tier); rowNumber++)
+        {
+            int rowStart = layout.seatIndex(rowNumber, 1);
+            int rowEnd = rowStart + numRows;
+            int bestStart = -1;
+            int bestDistance = Integer.MAX_VALUE;
+
+            int runStart = occupancy.nextFree(rowStart);
+            while (runStart >= 0 && runStart + count <= rowEnd)
+            {
+                int runEnd = Math.min(occupancy.nextTaken(runStart), rowEnd);
+                if (runEnd - runStart >= count)
+                {
+                    //the run has room, so pick the start within it that is nearest the middle of the row
+                    int start = Math.max(runStart, Math.min(rowStart + centredOffset, runEnd - count));
+                    int distance = Math.abs(start - (rowStart + centredOffset));
+                    if (distance < bestDistance)
+                    {
+                        bestStart = start;
+                        bestDistance = distance;
+                    }
+                }
+                runStart = occupancy.nextFree(runEnd);
+            }
+
+            if (bestStart >= 0)
+            {
+                return bestStart;
+            }
+        }
+
+        return -1;
     }
 
     /**
-     * Return statistics regarding the performance and sales.
-     * @return
+     * Return statistics regarding the performance and sales. The report is only rebuilt if tickets have been sold
+     * since it was last generated.
+     * @return A line of the act's sales report.
      */
     public String generateSalesReport()
     {
-        String performanceReport = "" + getID() + "\t" + startTime + "\t" + numTicketsSold + "\t" + "$" + totalSalesReceipt;
+        //read the version before the totals, so a sale that lands while building leaves the cache out of date
+        long version = salesVersion.get();
+        VersionedValue<String> cached = cachedSalesReport;
+        if (cached != null && cached.isCurrent(version))
+        {
+            return cached.getValue();
+        }
+
+        String performanceReport = "" + getID() + "\t" + startTime + "\t" + occupancy.getTicketsSold() + "\t" + "$"
+                + occupancy.getTotalReceipts();
+        cachedSalesReport = new VersionedValue<String>(version, performanceReport);
         return performanceReport;
     }
 
     /**
-     * @return A collection of the issued ticket IDs.
+     * Lists the IDs of the tickets issued so far. A ticket's ID follows from its seat, so nothing is stored per ticket:
+     * the taken seats are read from a copy of the occupancy bits, and each ID is only built when it is asked for.
+     * @return A read-only list of the issued ticket IDs in alphabetical order.
      */
     public List<String> getIssuedTicketIDs()
     {
-        return issuedTicketIDs;
+        //copy the bits first, so the list does not change under the caller while tickets are being sold
+        int wordCount = occupancy.getWordCount();
+        long[] words = new long[wordCount];
+        int ticketCount = 0;
+        for (int i = 0; i < wordCount; i++)
+        {
+            words[i] = occupancy.getWord(i);
+            ticketCount += Long.bitCount(words[i]);
+        }
+
+        //seat IDs share a prefix, so their alphabetical order is that of the seat indexes' decimal digits. Walk the
+        //indexes in that order (0, 1, 10, 100, 101, ..., 11, 110, ...) and keep the taken ones.
+        int[] seatIndexes = new int[ticketCount];
+        int found = 0;
+        long seatCount = layout.getSeatCount();
+        long seatIndex = 0;
+        while (found < ticketCount)
+        {
+            if ((words[(int) (seatIndex >>> 6)] & (1L << seatIndex)) != 0)
+            {
+                seatIndexes[found++] = (int) seatIndex;
+                if (found == ticketCount)
+                {
+                    break;
+                }
+            }
+
+            if (seatIndex != 0 && seatIndex * 10 < seatCount)
+            {
+                seatIndex *= 10;
+            }
+            else
+            {
+                //step to the next sibling, climbing back up past any 9s or the end of the seats
+                while (seatIndex % 10 == 9 || seatIndex + 1 >= seatCount)
+                {
+                    seatIndex /= 10;
+                }
+                seatIndex++;
+            }
+        }
+
+        return new TicketIDList(getID(), seatIndexes);
+    }
+
+    /**
+     * A read-only list of ticket IDs that builds each ID from its seat index when it is read.
+     */
+    private static class TicketIDList extends AbstractList<String> implements RandomAccess
+    {
+        private final String performanceID;
+        private final int[] seatIndexes;
+
+        private TicketIDList(String performanceID, int[] seatIndexes)
+        {
+            this.performanceID = performanceID;
+            this.seatIndexes = seatIndexes;
+        }
+
+        @Override
+        public String get(int index)
+        {
+            return performanceID + "-" + seatIndexes[index];
+        }
+
+        @Override
+        public int size()
+        {
+            return seatIndexes.length;
+        }
     }
 }
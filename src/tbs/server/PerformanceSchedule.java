@@ -0,0 +1,164 @@
+package tbs.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Supplier;
+
+/**
+ * This class indexes performances by their start time, so the performances in a time range can be found without
+ * looking at any others. Performances that start at the same minute are kept in order of ID. The schedule is safe to
+ * use from several threads at once.
+ * <p>
+ * A schedule can also act as an interval index for a single room: if performances are only ever added through
+ * addIfFree, no two of them overlap, so whether a new performance fits can be decided from its two neighbours alone.
+ */
+public class PerformanceSchedule
+{
+    private final ConcurrentNavigableMap<Long, Set<Performance>> performancesByStart =
+            new ConcurrentSkipListMap<Long, Set<Performance>>();
+
+    /**
+     * Adds a performance to the schedule.
+     * @param performance The performance to add.
+     */
+    public void add(Performance performance)
+    {
+        Set<Performance> sameStart = performancesByStart.computeIfAbsent(performance.getStartMinute(),
+                start -> new ConcurrentSkipListSet<Performance>());
+        sameStart.add(performance);
+    }
+
+    /**
+     * Adds a performance only if it does not overlap any performance already in the schedule. A performance occupies
+     * the half-open range from its start minute to its end minute, and two performances that start at the same minute
+     * always overlap. The check and the addition happen as one step, and cost O(log n).
+     *
+     * @param startMinute The start of the new performance, in minutes since 1970-01-01T00:00.
+     * @param endMinute The end of the new performance, in minutes since 1970-01-01T00:00.
+     * @param factory Creates the performance once it is known to fit, so nothing is created for a clash.
+     * @return The new performance, or null if it would overlap another.
+     */
+    public synchronized Performance addIfFree(long startMinute, long endMinute, Supplier<Performance> factory)
+    {
+        if (overlaps(startMinute, endMinute))
+        {
+            return null;
+        }
+
+        Performance performance = factory.get();
+        add(performance);
+        return performance;
+    }
+
+    /**
+     * @param startMinute The start of a time range, inclusive.
+     * @param endMinute The end of a time range, exclusive.
+     * @return True if a performance in the schedule overlaps the time range.
+     */
+    public boolean overlaps(long startMinute, long endMinute)
+    {
+        //the latest performance starting at or before the range must have ended by the time the range starts
+        Map.Entry<Long, Set<Performance>> previous = performancesByStart.floorEntry(startMinute);
+        if (previous != null && (previous.getKey() == startMinute || latestEnd(previous.getValue()) > startMinute))
+        {
+            return true;
+        }
+
+        //and the earliest performance starting after it must not start before the range ends
+        Long nextStart = performancesByStart.higherKey(startMinute);
+        return nextStart != null && nextStart < endMinute;
+    }
+
+    /**
+     * Lists the gaps between performances on one day.
+     *
+     * @param dayStartMinute The start of the day, in minutes since 1970-01-01T00:00.
+     * @return Pairs of start (inclusive) and end (exclusive) minutes, one pair per gap, in time order.
+     */
+    public List<long[]> freeSlots(long dayStartMinute)
+    {
+        long dayEndMinute = dayStartMinute + StartTime.MINUTES_PER_DAY;
+        long freeFrom = dayStartMinute;
+        List<long[]> slots = new ArrayList<long[]>();
+
+        //a performance from the day before may run past midnight
+        Map.Entry<Long, Set<Performance>> earlier = performancesByStart.lowerEntry(dayStartMinute);
+        if (earlier != null)
+        {
+            freeFrom = Math.max(freeFrom, latestEnd(earlier.getValue()));
+        }
+
+        for (Map.Entry<Long, Set<Performance>> sameStart
+                : performancesByStart.subMap(dayStartMinute, true, dayEndMinute, false).entrySet())
+        {
+            if (sameStart.getKey() > freeFrom)
+            {
+                slots.add(new long[] {freeFrom, sameStart.getKey()});
+            }
+            freeFrom = Math.max(freeFrom, latestEnd(sameStart.getValue()));
+        }
+
+        if (freeFrom < dayEndMinute)
+        {
+            slots.add(new long[] {freeFrom, dayEndMinute});
+        }
+        return slots;
+    }
+
+    /**
+     * @param performances Performances that start at the same minute.
+     * @return The latest time at which one of them ends.
+     */
+    private long latestEnd(Set<Performance> performances)
+    {
+        long latestEnd = Long.MIN_VALUE;
+        for (Performance performance : performances)
+        {
+            latestEnd = Math.max(latestEnd, performance.getEndMinute());
+        }
+        return latestEnd;
+    }
+
+    /**
+     * Lists the performances that start within a time range, in order of start time.
+     *
+     * @param fromMinute The start of the range in minutes since 1970-01-01T00:00, inclusive.
+     * @param toMinute The end of the range in minutes since 1970-01-01T00:00, inclusive.
+     * @param offset The number of matching performances to skip, for paging.
+     * @param limit The greatest number of performances to return.
+     * @return The matching performances.
+     */
+    public List<Performance> between(long fromMinute, long toMinute, int offset, int limit)
+    {
+        List<Performance> matches = new ArrayList<Performance>();
+        if (fromMinute > toMinute || limit <= 0)
+        {
+            return matches;
+        }
+
+        int skipped = 0;
+        for (Set<Performance> sameStart : performancesByStart.subMap(fromMinute, true, toMinute, true).values())
+        {
+            for (Performance performance : sameStart)
+            {
+                if (skipped < offset)
+                {
+                    skipped++;
+                    continue;
+                }
+
+                matches.add(performance);
+                if (matches.size() == limit)
+                {
+                    return matches;
+                }
+            }
+        }
+        return matches;
+    }
+}
@@ -14,10 +14,17 @@ public enum ResponseMessages
     MISSING_ACTS_ERR_MSG ("ERROR: No acts found with specified artist ID."),
     MISSING_PERFORMANCES_ERR_MSG ("ERROR: No performances found with specified artist ID."),
     SCHEDULE_PERFORMANCE_ERR_MSG ("ERROR: There was an issue with scheduling the performance"),
+    THEATRE_BOOKED_ERR_MSG ("ERROR: The theatre already has a performance on at that time."),
     ISSUE_TICKET_ERR_MSG ("ERROR: There was a problem with issuing the ticket."),
+    SEAT_FORMAT_ERR_MSG ("ERROR: A seat is in the wrong format or does not exist."),
+    NO_ADJACENT_SEATS_ERR_MSG ("ERROR: There are not enough adjacent seats available in that tier."),
     PERFORMANCE_NOT_FOUND_ERR_MSG ("ERROR: No performance found with specified ID."),
     ACT_NOT_FOUND_ERR_MSG ("ERROR: No act found with specified ID."),
     ARTIST_NOT_FOUND_ERR_MSG ("ERROR: No artist found with specified ID."),
+    THEATRE_NOT_FOUND_ERR_MSG ("ERROR: No theatre found with specified ID."),
+    JOURNAL_ERR_MSG ("ERROR: The change could not be saved, so the server is no longer accepting changes."),
+    DURATION_ERR_MSG ("ERROR: The duration must be more than zero minutes."),
+    TIME_FORMAT_ERR_MSG ("ERROR: Times must be in the format yyyy-mm-ddThh:mm, and days in the format yyyy-mm-dd."),
 
     //Success Messages
     FILE_FOUND_SUCCESS_MSG ("");
@@ -43,6 +50,25 @@ public enum ResponseMessages
         return description;
     }
 
+    /**
+     * @param lineNumber The line of the input file the problem was found on.
+     * @return the ResponseMessage's description, followed by the line number.
+     */
+    public String atLine(int lineNumber)
+    {
+        return description + " (line " + lineNumber + ")";
+    }
+
+    /**
+     * @param fileName The name of the input file the problem was found in.
+     * @param lineNumber The line of the input file the problem was found on.
+     * @return the ResponseMessage's description, followed by the file name and line number.
+     */
+    public String atLine(String fileName, int lineNumber)
+    {
+        return description + " (" + fileName + " line " + lineNumber + ")";
+    }
+
     /**
      * @return a string representation of the object.
      */
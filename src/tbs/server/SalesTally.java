@@ -0,0 +1,40 @@
+package tbs.server;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class keeps running totals of tickets sold and sales receipts. It is updated as tickets are issued, so totals
+ * can be read without going back over the performances or seats that produced them.
+ */
+public class SalesTally
+{
+    private final LongAdder ticketsSold = new LongAdder();
+    private final LongAdder totalReceipts = new LongAdder();
+
+    /**
+     * Adds a sale to the totals.
+     * @param tickets The number of tickets sold.
+     * @param receipts The sum of the prices of those tickets.
+     */
+    public void record(int tickets, long receipts)
+    {
+        ticketsSold.add(tickets);
+        totalReceipts.add(receipts);
+    }
+
+    /**
+     * @return The number of tickets sold so far.
+     */
+    public long getTicketsSold()
+    {
+        return ticketsSold.sum();
+    }
+
+    /**
+     * @return The sum of the prices of the tickets sold so far.
+     */
+    public long getTotalReceipts()
+    {
+        return totalReceipts.sum();
+    }
+}
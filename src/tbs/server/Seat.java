@@ -2,27 +2,33 @@ package tbs.server;
 
 /**
  * This class represents a seat. Seats are part of theatres, and their location is determined by a row and seat number.
+ * A seat is a read-only view of a performance's seating, created when it is asked for.
  */
 public class Seat extends UniqueItem
 {
-    private boolean ticketIssued = false;
-    private int price;
-    private int rowNumber;
-    private int seatNumber;
+    private final boolean ticketIssued;
+    private final int price;
+    private final int rowNumber;
+    private final int seatNumber;
 
-    private String ticketID = getID();
+    private final String ticketID = getID();
 
     /**
      * Creates and returns an identifiable.
      *
      * @param id A unique string ID.
+     * @param rowNum The row the seat is located in.
+     * @param seatNum How far down the row the seat is.
+     * @param price The price of the ticket for this seat.
+     * @param ticketIssued Whether the ticket for this seat has been issued.
      */
-    public Seat(String id, int rowNum, int seatNum, int price)
+    public Seat(String id, int rowNum, int seatNum, int price, boolean ticketIssued)
     {
         super(id);
         this.rowNumber = rowNum;
         this.seatNumber = seatNum;
         this.price = price;
+        this.ticketIssued = ticketIssued;
     }
 
     /**
@@ -74,14 +80,6 @@ public class Seat extends UniqueItem
         return super.compareTo(other);
     }
 
-    /**
-     * Records the purchase of the ticket for this seat.
-     */
-    public void issueTicket()
-    {
-        ticketIssued = true;
-    }
-
     /**
      * @return True or false, checks if the ticket for this seat has been issued.
      */
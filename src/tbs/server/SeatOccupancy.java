@@ -0,0 +1,333 @@
+package tbs.server;
+
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * This class records which seats of a performance have had their tickets issued, along with the performance's sales
+ * totals. Seats are identified by their row-major index (row 1 seat 1 is index 0, row 1 seat 2 is index 1, and so
+ * on), and each seat takes a single bit.
+ * <p>
+ * Seats are taken with an atomic compare-and-set on the word holding their bit, without locking, so any number of
+ * threads can issue tickets at once, and a seat can only ever be taken once. A group within one word is taken the same
+ * way, with one compare-and-set on all of its bits.
+ * <p>
+ * A group spread over several words is taken a word at a time while holding claimLock alone, and its words are given
+ * back if a later one has a seat taken. The lock is only held by such groups, and a claim within one word only turns
+ * to it when it finds a seat taken while one of them may be part way through, so it never gives up on a seat that a
+ * failed group was about to give back.
+ * <p>
+ * Subclasses decide where the words and totals are kept, on the heap or outside it. They are created by a SeatStore.
+ */
+public abstract class SeatOccupancy
+{
+    protected static final int ADDRESS_BITS_PER_WORD = 6;
+    protected static final int BITS_PER_WORD = 1 << ADDRESS_BITS_PER_WORD;
+
+    private final int seatCount;
+    private final int wordCount;
+
+    //held alone by a claim spread over several words, and shared by a claim within one word that may have met one
+    private final StampedLock claimLock = new StampedLock();
+
+    /**
+     * Creates and returns a SeatOccupancy object with every seat free.
+     * @param seatCount The number of seats being tracked.
+     */
+    protected SeatOccupancy(int seatCount)
+    {
+        this.seatCount = seatCount;
+        this.wordCount = wordsFor(seatCount);
+    }
+
+    /**
+     * @param seatCount A number of seats.
+     * @return The number of words needed to hold that many seats.
+     */
+    public static int wordsFor(int seatCount)
+    {
+        return (seatCount + BITS_PER_WORD - 1) >>> ADDRESS_BITS_PER_WORD;
+    }
+
+    /**
+     * @return The number of seats being tracked.
+     */
+    public int getSeatCount()
+    {
+        return seatCount;
+    }
+
+    /**
+     * @return The number of words the seats are packed into.
+     */
+    public int getWordCount()
+    {
+        return wordCount;
+    }
+
+    /**
+     * @param wordIndex The index of a word.
+     * @return The bits of 64 seats, with the seat at index wordIndex * 64 in the lowest bit.
+     */
+    public abstract long getWord(int wordIndex);
+
+    /**
+     * Atomically replaces a word if it still holds the expected value.
+     * @param wordIndex The index of a word.
+     * @param expected The value the word is expected to hold.
+     * @param replacement The value to put in the word.
+     * @return The value the word held, which equals expected if it was replaced.
+     */
+    protected abstract long compareAndExchangeWord(int wordIndex, long expected, long replacement);
+
+    /**
+     * @param wordIndex The index of a word.
+     * @param value The value to put in the word.
+     */
+    protected abstract void setWord(int wordIndex, long value);
+
+    /**
+     * Adds a sale to the totals.
+     * @param tickets The number of tickets sold.
+     * @param receipts The sum of the prices of those tickets.
+     */
+    public abstract void recordSales(int tickets, long receipts);
+
+    /**
+     * @return The number of tickets sold.
+     */
+    public abstract int getTicketsSold();
+
+    /**
+     * @return The sum of the prices of the tickets sold.
+     */
+    public abstract long getTotalReceipts();
+
+    /**
+     * Replaces the state of every seat, as when a snapshot is loaded.
+     * @param savedWords Words returned by getWord for the same number of seats.
+     */
+    public void restore(LongBuffer savedWords)
+    {
+        if (savedWords.remaining() != wordCount)
+        {
+            throw new IllegalArgumentException("Expected " + wordCount + " words of seats, but got "
+                    + savedWords.remaining());
+        }
+        for (int i = 0; i < wordCount; i++)
+        {
+            setWord(i, savedWords.get(savedWords.position() + i));
+        }
+    }
+
+    /**
+     * @param seatIndex The row-major index of a seat.
+     * @return True if the ticket for the seat has been issued.
+     */
+    public boolean isTaken(int seatIndex)
+    {
+        return (getWord(seatIndex >>> ADDRESS_BITS_PER_WORD) & (1L << seatIndex)) != 0;
+    }
+
+    /**
+     * Marks a seat as taken.
+     * @param seatIndex The row-major index of a seat.
+     * @return True if the seat was free and is now taken, false if it had already been taken.
+     */
+    public boolean take(int seatIndex)
+    {
+        return takeWithinWord(seatIndex >>> ADDRESS_BITS_PER_WORD, 1L << seatIndex);
+    }
+
+    /**
+     * Marks a group of seats as taken in a single step: either every seat is taken, or none of them are, and a seat is
+     * never refused to another caller because of a group that then fails. A reader such as nextFree may briefly see
+     * part of a group spread over several words that is then given back.
+     * @param seatIndexes The row-major indexes of the seats.
+     * @return True if every seat was free and is now taken, false if any had already been taken or the same seat was
+     * asked for twice.
+     */
+    public boolean takeAll(int[] seatIndexes)
+    {
+        if (seatIndexes.length == 0)
+        {
+            return true;
+        }
+
+        //gather one mask per word, visiting the words in order
+        int[] sortedIndexes = seatIndexes.clone();
+        Arrays.sort(sortedIndexes);
+        int[] wordIndexes = new int[sortedIndexes.length];
+        long[] masks = new long[sortedIndexes.length];
+        int words = 0;
+        for (int i = 0; i < sortedIndexes.length; i++)
+        {
+            if (i > 0 && sortedIndexes[i] == sortedIndexes[i - 1])
+            {
+                return false;
+            }
+            int wordIndex = sortedIndexes[i] >>> ADDRESS_BITS_PER_WORD;
+            if (words == 0 || wordIndexes[words - 1] != wordIndex)
+            {
+                wordIndexes[words++] = wordIndex;
+            }
+            masks[words - 1] |= 1L << sortedIndexes[i];
+        }
+
+        if (words == 1)
+        {
+            return takeWithinWord(wordIndexes[0], masks[0]);
+        }
+
+        //claims within one word carry on meanwhile, so each word is taken with a compare-and-set of its own
+        long stamp = claimLock.writeLock();
+        try
+        {
+            for (int i = 0; i < words; i++)
+            {
+                if (!takeInWord(wordIndexes[i], masks[i]))
+                {
+                    for (int taken = 0; taken < i; taken++)
+                    {
+                        releaseInWord(wordIndexes[taken], masks[taken]);
+                    }
+                    return false;
+                }
+            }
+            return true;
+        }
+        finally
+        {
+            claimLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Takes some seats that share a word, without locking unless a seat is found taken while a group spread over
+     * several words may be part way through.
+     * @param wordIndex The index of the word.
+     * @param mask The bits of the seats.
+     * @return True if every seat was free and is now taken, false if any had already been taken.
+     */
+    private boolean takeWithinWord(int wordIndex, long mask)
+    {
+        long stamp = claimLock.tryOptimisticRead();
+        if (takeInWord(wordIndex, mask))
+        {
+            return true;
+        }
+        if (stamp != 0 && claimLock.validate(stamp))
+        {
+            //no group was being taken, so the seat is really gone
+            return false;
+        }
+
+        //the seat may belong to a group that is about to be given back, so wait for it and look again
+        stamp = claimLock.readLock();
+        try
+        {
+            return takeInWord(wordIndex, mask);
+        }
+        finally
+        {
+            claimLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Takes some seats that share a word, with a single compare-and-set.
+     * @param wordIndex The index of the word.
+     * @param mask The bits of the seats.
+     * @return True if every seat was free and is now taken, false if any had already been taken.
+     */
+    private boolean takeInWord(int wordIndex, long mask)
+    {
+        long word = getWord(wordIndex);
+        while ((word & mask) == 0)
+        {
+            //another seat in the same word may change under us, in which case retry with the fresh value
+            long witness = compareAndExchangeWord(wordIndex, word, word | mask);
+            if (witness == word)
+            {
+                return true;
+            }
+            word = witness;
+        }
+        return false;
+    }
+
+    /**
+     * Frees some seats that share a word, which the caller took and nobody else can have freed.
+     * @param wordIndex The index of the word.
+     * @param mask The bits of the seats.
+     */
+    private void releaseInWord(int wordIndex, long mask)
+    {
+        long word = getWord(wordIndex);
+        while (true)
+        {
+            long witness = compareAndExchangeWord(wordIndex, word, word & ~mask);
+            if (witness == word)
+            {
+                return;
+            }
+            word = witness;
+        }
+    }
+
+    /**
+     * Finds the first free seat at or after the given index.
+     * @param fromIndex The index to start searching from.
+     * @return The index of the free seat, or -1 if every remaining seat is taken.
+     */
+    public int nextFree(int fromIndex)
+    {
+        if (fromIndex >= seatCount)
+        {
+            return -1;
+        }
+
+        int wordIndex = fromIndex >>> ADDRESS_BITS_PER_WORD;
+        long freeBits = ~getWord(wordIndex) & (-1L << fromIndex);
+        while (freeBits == 0)
+        {
+            wordIndex++;
+            if (wordIndex == wordCount)
+            {
+                return -1;
+            }
+            freeBits = ~getWord(wordIndex);
+        }
+
+        int seatIndex = (wordIndex << ADDRESS_BITS_PER_WORD) + Long.numberOfTrailingZeros(freeBits);
+        return seatIndex < seatCount ? seatIndex : -1;
+    }
+
+    /**
+     * Finds the first taken seat at or after the given index.
+     * @param fromIndex The index to start searching from.
+     * @return The index of the taken seat, or the seat count if every remaining seat is free.
+     */
+    public int nextTaken(int fromIndex)
+    {
+        if (fromIndex >= seatCount)
+        {
+            return seatCount;
+        }
+
+        int wordIndex = fromIndex >>> ADDRESS_BITS_PER_WORD;
+        long takenBits = getWord(wordIndex) & (-1L << fromIndex);
+        while (takenBits == 0)
+        {
+            wordIndex++;
+            if (wordIndex == wordCount)
+            {
+                return seatCount;
+            }
+            takenBits = getWord(wordIndex);
+        }
+
+        return Math.min((wordIndex << ADDRESS_BITS_PER_WORD) + Long.numberOfTrailingZeros(takenBits), seatCount);
+    }
+}
@@ -0,0 +1,17 @@
+package tbs.server;
+
+/**
+ * A callback that is handed the available seats of a performance as runs of adjacent seats, in row order. A run never
+ * spans more than one row.
+ */
+@FunctionalInterface
+public interface SeatRangeVisitor
+{
+    /**
+     * @param rowNumber The row the seats are located in.
+     * @param firstSeatNumber The first seat of the run.
+     * @param lastSeatNumber The last seat of the run, inclusive.
+     * @return True to carry on to the next run, false to stop.
+     */
+    boolean visitRange(int rowNumber, int firstSeatNumber, int lastSeatNumber);
+}
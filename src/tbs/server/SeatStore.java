@@ -0,0 +1,25 @@
+package tbs.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Decides where each performance's seat occupancy and sales totals are kept.
+ */
+public interface SeatStore extends Closeable
+{
+    /**
+     * @param seatCount The number of seats in the performance's theatre.
+     * @return The storage for a new performance, with every seat free and no sales.
+     */
+    SeatOccupancy allocate(int seatCount);
+
+    /**
+     * Frees anything the store holds outside the heap. No occupancy it has allocated may be used afterwards.
+     * @throws IOException If a backing file cannot be closed.
+     */
+    @Override
+    default void close() throws IOException
+    {
+    }
+}
@@ -0,0 +1,10 @@
+package tbs.server;
+
+/**
+ * This enum represents the price tiers of a theatre's seats. Premium seats are in the rows closest to the stage.
+ */
+public enum SeatTier
+{
+    PREMIUM,
+    CHEAP
+}
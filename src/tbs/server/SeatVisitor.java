@@ -0,0 +1,15 @@
+package tbs.server;
+
+/**
+ * A callback that is handed the available seats of a performance one at a time, in row order.
+ */
+@FunctionalInterface
+public interface SeatVisitor
+{
+    /**
+     * @param rowNumber The row the seat is located in.
+     * @param seatNumber How far down the row the seat is.
+     * @return True to carry on to the next seat, false to stop.
+     */
+    boolean visitSeat(int rowNumber, int seatNumber);
+}
@@ -0,0 +1,105 @@
+package tbs.server;
+
+/**
+ * This class describes the seating geometry of a theatre. Seats are arranged as a square block, and are numbered
+ * row by row: row 1 seat 1 is index 0, row 1 seat 2 is index 1, and so on. Rows 1 to floor(number of rows / 2) are
+ * premium seating, the rest are cheap seating.
+ * <p>
+ * A layout is immutable and holds no per-seat state, so one layout is shared by every performance in its theatre.
+ */
+public class SeatingLayout
+{
+    private final int numRows;
+    private final int firstCheapRow;
+
+    /**
+     * Creates and returns a SeatingLayout object.
+     * @param numRows Both the number of rows and the number of seats in each row.
+     */
+    public SeatingLayout(int numRows)
+    {
+        this.numRows = numRows;
+        this.firstCheapRow = (numRows / 2) + 1;
+    }
+
+    /**
+     * @return The number of rows, which is also the number of seats in each row.
+     */
+    public int getNumRows()
+    {
+        return numRows;
+    }
+
+    /**
+     * @return The total number of seats.
+     */
+    public int getSeatCount()
+    {
+        return numRows * numRows;
+    }
+
+    /**
+     * @param rowNumber The row a seat is located in.
+     * @param seatNumber How far down the row the seat is.
+     * @return True if there is a seat at the given location.
+     */
+    public boolean isValidLocation(int rowNumber, int seatNumber)
+    {
+        return rowNumber > 0 && seatNumber > 0 && rowNumber <= numRows && seatNumber <= numRows;
+    }
+
+    /**
+     * @param rowNumber The row a seat is located in.
+     * @return The price tier of every seat in the given row.
+     */
+    public SeatTier tierOfRow(int rowNumber)
+    {
+        return rowNumber < firstCheapRow ? SeatTier.PREMIUM : SeatTier.CHEAP;
+    }
+
+    /**
+     * @param tier A price tier.
+     * @return The first row of the given tier.
+     */
+    public int firstRowOf(SeatTier tier)
+    {
+        return tier == SeatTier.PREMIUM ? 1 : firstCheapRow;
+    }
+
+    /**
+     * @param tier A price tier.
+     * @return The last row of the given tier.
+     */
+    public int lastRowOf(SeatTier tier)
+    {
+        return tier == SeatTier.PREMIUM ? firstCheapRow - 1 : numRows;
+    }
+
+    /**
+     * @param rowNumber The row a seat is located in.
+     * @param seatNumber How far down the row the seat is.
+     * @return The row-major index of the seat.
+     */
+    public int seatIndex(int rowNumber, int seatNumber)
+    {
+        return (rowNumber - 1) * numRows + (seatNumber - 1);
+    }
+
+    /**
+     * @param seatIndex The row-major index of a seat.
+     * @return The row the seat is located in.
+     */
+    public int rowNumberOf(int seatIndex)
+    {
+        return seatIndex / numRows + 1;
+    }
+
+    /**
+     * @param seatIndex The row-major index of a seat.
+     * @return How far down the row the seat is.
+     */
+    public int seatNumberOf(int seatIndex)
+    {
+        return seatIndex % numRows + 1;
+    }
+}
@@ -0,0 +1,289 @@
+package tbs.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * A compact binary copy of a server's whole state, for restarting without replaying every change ever made.
+ * <p>
+ * The file starts with a magic number, a format version and the last journal generation the snapshot includes,
+ * followed by a section each for theatres, artists, acts
+ * and performances, in that order so every item follows the items it refers to. Every item in a section is preceded
+ * by a marker byte, and a zero byte ends the section. Performances carry their seat occupancy as the packed words of
+ * their SeatOccupancy, and their sales totals as plain numbers. The file ends with a CRC-32 of everything before it.
+ * <p>
+ * Snapshots are written through a fixed size buffer, to a temporary file that replaces the old snapshot only once it
+ * is complete. They are read through a memory mapping, so seat occupancy is copied straight out of the file.
+ */
+public class Snapshot
+{
+    private static final int MAGIC = 0x54425353;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int CHECKSUM_BYTES = 8;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final byte MORE_ITEMS = 1;
+    private static final byte END_OF_SECTION = 0;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CRC32 checksum = new CRC32();
+
+    /**
+     * Creates and returns a Snapshot object for writing.
+     * @param channel The file to write to.
+     */
+    private Snapshot(FileChannel channel)
+    {
+        this.channel = channel;
+    }
+
+    /**
+     * Writes a snapshot of the given items. Items changed while the snapshot is being written may or may not be
+     * included, so nothing should be changed until it returns.
+     *
+     * @param file The snapshot file. It is only replaced once the new snapshot is complete and on disk.
+     * @param theatres Every theatre.
+     * @param artists Every artist.
+     * @param acts Every act, each with its performances.
+     * @param journalGeneration The generation of the journal whose records are all included, or
+     *                          Journal.NO_GENERATION.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    public static void write(Path file, Iterable<Theatre> theatres, Iterable<Artist> artists, Iterable<Act> acts,
+                             long journalGeneration) throws IOException
+    {
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            Snapshot snapshot = new Snapshot(channel);
+            snapshot.putInt(MAGIC);
+            snapshot.putInt(FORMAT_VERSION);
+            snapshot.putLong(journalGeneration);
+
+            for (Theatre theatre : theatres)
+            {
+                snapshot.putByte(MORE_ITEMS);
+                snapshot.putString(theatre.getID());
+                snapshot.putInt(theatre.getNumRows());
+                snapshot.putInt(theatre.getFloorArea());
+            }
+            snapshot.putByte(END_OF_SECTION);
+
+            for (Artist artist : artists)
+            {
+                snapshot.putByte(MORE_ITEMS);
+                snapshot.putString(artist.getID());
+                snapshot.putString(artist.getName());
+            }
+            snapshot.putByte(END_OF_SECTION);
+
+            for (Act act : acts)
+            {
+                snapshot.putByte(MORE_ITEMS);
+                snapshot.putString(act.getID());
+                snapshot.putString(act.getTitle());
+                snapshot.putString(act.getArtist().getID());
+                snapshot.putInt(act.getDuration());
+            }
+            snapshot.putByte(END_OF_SECTION);
+
+            for (Act act : acts)
+            {
+                for (Performance performance : act.getPerformances())
+                {
+                    snapshot.putByte(MORE_ITEMS);
+                    snapshot.putString(performance.getID());
+                    snapshot.putString(performance.getAct().getID());
+                    snapshot.putString(performance.getTheatre().getID());
+                    snapshot.putString(performance.getStartTime());
+                    snapshot.putInt(performance.getPrice(SeatTier.PREMIUM));
+                    snapshot.putInt(performance.getPrice(SeatTier.CHEAP));
+                    snapshot.putInt(performance.getTicketsSold());
+                    snapshot.putLong(performance.getTotalReceipts());
+
+                    SeatOccupancy occupancy = performance.getOccupancy();
+                    snapshot.putInt(occupancy.getWordCount());
+                    for (int i = 0; i < occupancy.getWordCount(); i++)
+                    {
+                        snapshot.putLong(occupancy.getWord(i));
+                    }
+                }
+            }
+            snapshot.putByte(END_OF_SECTION);
+
+            snapshot.flush();
+            snapshot.putLong(snapshot.checksum.getValue());
+            snapshot.flush();
+            channel.force(true);
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a snapshot, handing every item in it to the replayer in the order it was written. The whole file is
+     * checked before anything is handed over.
+     *
+     * @param file The snapshot file.
+     * @param replayer The callback to rebuild state from the snapshot.
+     * @return The generation of the journal whose records are all included, or Journal.NO_GENERATION.
+     * @throws IOException If the file cannot be read, is not a complete snapshot, or holds an item the replayer cannot
+     * apply.
+     */
+    public static long read(Path file, SnapshotReplayer replayer) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            if (channel.size() > Integer.MAX_VALUE)
+            {
+                throw new IOException("The snapshot is too large to read.");
+            }
+
+            ByteBuffer snapshot = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (snapshot.remaining() < HEADER_BYTES + CHECKSUM_BYTES || snapshot.getInt() != MAGIC
+                    || snapshot.getInt() != FORMAT_VERSION)
+            {
+                throw new IOException("The file is not a snapshot, or was written by an unsupported version.");
+            }
+
+            int checksumPosition = snapshot.limit() - CHECKSUM_BYTES;
+            ByteBuffer body = snapshot.duplicate();
+            body.position(0);
+            body.limit(checksumPosition);
+            CRC32 bodyChecksum = new CRC32();
+            bodyChecksum.update(body);
+            if (bodyChecksum.getValue() != snapshot.getLong(checksumPosition))
+            {
+                throw new IOException("The snapshot is incomplete or damaged.");
+            }
+            snapshot.limit(checksumPosition);
+            long journalGeneration = snapshot.getLong();
+
+            try
+            {
+                readItems(snapshot, replayer);
+                return journalGeneration;
+            }
+            catch (RuntimeException e)
+            {
+                throw new IOException("The snapshot could not be read.", e);
+            }
+        }
+    }
+
+    /**
+     * Hands every item in the snapshot to the replayer.
+     * @param snapshot The snapshot, positioned after its header.
+     * @param replayer The callback to hand the items to.
+     */
+    private static void readItems(ByteBuffer snapshot, SnapshotReplayer replayer)
+    {
+        while (snapshot.get() == MORE_ITEMS)
+        {
+            replayer.replayTheatre(getString(snapshot), snapshot.getInt(), snapshot.getInt());
+        }
+
+        while (snapshot.get() == MORE_ITEMS)
+        {
+            replayer.replayArtist(getString(snapshot), getString(snapshot));
+        }
+
+        while (snapshot.get() == MORE_ITEMS)
+        {
+            replayer.replayAct(getString(snapshot), getString(snapshot), getString(snapshot), snapshot.getInt());
+        }
+
+        while (snapshot.get() == MORE_ITEMS)
+        {
+            String performanceID = getString(snapshot);
+            replayer.replayPerformance(performanceID, getString(snapshot), getString(snapshot), getString(snapshot),
+                    "$" + snapshot.getInt(), "$" + snapshot.getInt());
+            int ticketsSold = snapshot.getInt();
+            long totalReceipts = snapshot.getLong();
+
+            //hand over a view of the words in the mapped file, rather than copying them out first
+            int wordCount = snapshot.getInt();
+            LongBuffer words = snapshot.slice().asLongBuffer();
+            words.limit(wordCount);
+            replayer.replaySeats(performanceID, words, ticketsSold, totalReceipts);
+            snapshot.position(snapshot.position() + wordCount * Long.BYTES);
+        }
+    }
+
+    private static String getString(ByteBuffer snapshot)
+    {
+        byte[] bytes = new byte[snapshot.getInt()];
+        snapshot.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void putByte(byte value) throws IOException
+    {
+        ensureRoom(1);
+        buffer.put(value);
+    }
+
+    private void putInt(int value) throws IOException
+    {
+        ensureRoom(Integer.BYTES);
+        buffer.putInt(value);
+    }
+
+    private void putLong(long value) throws IOException
+    {
+        ensureRoom(Long.BYTES);
+        buffer.putLong(value);
+    }
+
+    private void putString(String value) throws IOException
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putInt(bytes.length);
+
+        //a long string may not fit in the buffer at all, so put it a buffer's worth at a time
+        int offset = 0;
+        while (offset < bytes.length)
+        {
+            ensureRoom(1);
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    /**
+     * Writes the buffer out if it does not have room for the given number of bytes.
+     * @param bytes The number of bytes about to be put, at most the size of the buffer.
+     */
+    private void ensureRoom(int bytes) throws IOException
+    {
+        if (buffer.remaining() < bytes)
+        {
+            flush();
+        }
+    }
+
+    /**
+     * Writes out everything in the buffer, adding it to the checksum.
+     */
+    private void flush() throws IOException
+    {
+        buffer.flip();
+        checksum.update(buffer.duplicate());
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
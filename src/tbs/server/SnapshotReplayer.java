@@ -0,0 +1,19 @@
+package tbs.server;
+
+import java.nio.LongBuffer;
+
+/**
+ * A callback that is handed the contents of a snapshot. Theatres, artists, acts and performances are handed over as
+ * they would be by a journal, and each performance is followed by the state of its seats.
+ */
+public interface SnapshotReplayer extends JournalReplayer
+{
+    /**
+     * @param performanceID The ID of a performance that has already been replayed.
+     * @param occupancyWords The performance's seat occupancy, one bit per seat in row-major order, packed into words
+     *                       as by SeatOccupancy. The buffer is only valid for the duration of the call.
+     * @param ticketsSold The number of tickets sold for the performance.
+     * @param totalReceipts The sum of the prices of those tickets.
+     */
+    void replaySeats(String performanceID, LongBuffer occupancyWords, int ticketsSold, long totalReceipts);
+}
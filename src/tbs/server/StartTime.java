@@ -0,0 +1,165 @@
+package tbs.server;
+
+/**
+ * This class converts start times in the ISO8601 format yyyy-mm-ddThh:mm (zero-padded) to and from the number of
+ * minutes since 1970-01-01T00:00. Times are compared and indexed as minutes, which is cheaper than comparing strings.
+ */
+public final class StartTime
+{
+    /**
+     * Returned by parse when the text is not a valid start time.
+     */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    public static final int MINUTES_PER_DAY = 24 * 60;
+
+    private static final int DAYS_PER_ERA = 146097; //the Gregorian calendar repeats every 400 years
+    private static final int DAYS_FROM_ERA_START_TO_EPOCH = 719468;
+
+    private StartTime()
+    {
+    }
+
+    /**
+     * Parses a start time without creating any objects.
+     *
+     * @param text A start time in the format yyyy-mm-ddThh:mm.
+     * @return The number of minutes since 1970-01-01T00:00, or INVALID if the text is not a valid start time.
+     */
+    public static long parse(String text)
+    {
+        if (text == null || text.length() != 16 || text.charAt(10) != 'T' || text.charAt(13) != ':')
+        {
+            return INVALID;
+        }
+
+        long startOfDay = parseDate(text);
+        int hour = parseDigits(text, 11, 13);
+        int minute = parseDigits(text, 14, 16);
+        if (startOfDay == INVALID || hour < 0 || hour > 23 || minute < 0 || minute > 59)
+        {
+            return INVALID;
+        }
+
+        return startOfDay + hour * 60 + minute;
+    }
+
+    /**
+     * Parses a date without creating any objects.
+     *
+     * @param text A date in the format yyyy-mm-dd.
+     * @return The number of minutes from 1970-01-01T00:00 to the start of the day, or INVALID if the text is not a
+     * valid date.
+     */
+    public static long parseDay(String text)
+    {
+        if (text == null || text.length() != 10)
+        {
+            return INVALID;
+        }
+        return parseDate(text);
+    }
+
+    /**
+     * @param epochMinutes A number of minutes since 1970-01-01T00:00.
+     * @return The time in the format yyyy-mm-ddThh:mm.
+     */
+    public static String format(long epochMinutes)
+    {
+        long days = Math.floorDiv(epochMinutes, MINUTES_PER_DAY);
+        int minuteOfDay = Math.floorMod(epochMinutes, MINUTES_PER_DAY);
+
+        //inverse of daysSinceEpoch
+        long shiftedDays = days + DAYS_FROM_ERA_START_TO_EPOCH;
+        long era = Math.floorDiv(shiftedDays, DAYS_PER_ERA);
+        long dayOfEra = shiftedDays - era * DAYS_PER_ERA;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+        int month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        StringBuilder text = new StringBuilder(16);
+        appendPadded(text, year, 4).append('-');
+        appendPadded(text, month, 2).append('-');
+        appendPadded(text, day, 2).append('T');
+        appendPadded(text, minuteOfDay / 60, 2).append(':');
+        appendPadded(text, minuteOfDay % 60, 2);
+        return text.toString();
+    }
+
+    /**
+     * @return The number of minutes from 1970-01-01T00:00 to the start of the day held in the first ten characters of
+     * the text (yyyy-mm-dd), or INVALID if they are not a valid date.
+     */
+    private static long parseDate(String text)
+    {
+        if (text.charAt(4) != '-' || text.charAt(7) != '-')
+        {
+            return INVALID;
+        }
+
+        int year = parseDigits(text, 0, 4);
+        int month = parseDigits(text, 5, 7);
+        int day = parseDigits(text, 8, 10);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month))
+        {
+            return INVALID;
+        }
+
+        return daysSinceEpoch(year, month, day) * MINUTES_PER_DAY;
+    }
+
+    /**
+     * @return The value of the digits between start (inclusive) and end (exclusive), or -1 if any is not a digit.
+     */
+    private static int parseDigits(String text, int start, int end)
+    {
+        int value = 0;
+        for (int i = start; i < end; i++)
+        {
+            char digit = text.charAt(i);
+            if (digit < '0' || digit > '9')
+            {
+                return -1;
+            }
+            value = value * 10 + (digit - '0');
+        }
+        return value;
+    }
+
+    private static int daysInMonth(int year, int month)
+    {
+        if (month == 2)
+        {
+            boolean leapYear = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+            return leapYear ? 29 : 28;
+        }
+        return (month == 4 || month == 6 || month == 9 || month == 11) ? 30 : 31;
+    }
+
+    /**
+     * Counts days in the proleptic Gregorian calendar, treating March as the first month of the year so that the leap
+     * day falls at the end.
+     */
+    private static long daysSinceEpoch(int year, int month, int day)
+    {
+        int shiftedYear = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(shiftedYear, 400);
+        long yearOfEra = shiftedYear - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * DAYS_PER_ERA + dayOfEra - DAYS_FROM_ERA_START_TO_EPOCH;
+    }
+
+    private static StringBuilder appendPadded(StringBuilder text, long value, int width)
+    {
+        String digits = Long.toString(value);
+        for (int i = digits.length(); i < width; i++)
+        {
+            text.append('0');
+        }
+        return text.append(digits);
+    }
+}
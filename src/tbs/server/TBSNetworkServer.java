@@ -0,0 +1,547 @@
+package tbs.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves a TBSServer over TCP, using the binary protocol described by TBSProtocol.
+ * <p>
+ * One thread runs a selector loop that accepts connections, reads request frames and writes response frames, and never
+ * blocks on a single connection. Requests are carried out by an AsyncTBSServerImpl, so a request that waits for the
+ * journal never holds up the loop, and responses are written as soon as their requests complete. A connection that
+ * has too many requests outstanding is not read from until some of its responses have been written, so a client that
+ * sends requests faster than it reads responses cannot make the server buffer without limit.
+ */
+public class TBSNetworkServer implements Closeable
+{
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+    private static final int MAX_OUTSTANDING_REQUESTS = 1024; //per connection
+    private static final int MAX_GATHERED_WRITES = 64;
+
+    private final AsyncTBSServerImpl requests;
+    private final ServerSocketChannel listener;
+    private final Selector selector;
+    private final Queue<Connection> readyToWrite = new ConcurrentLinkedQueue<Connection>();
+    private final Thread selectorThread;
+    private volatile boolean running = true;
+
+    /**
+     * Creates and returns a network server, and starts listening.
+     * @param server The server to carry out requests.
+     * @param address The address to listen on. A port of zero picks any free port.
+     * @param threadCount The greatest number of requests carried out at once.
+     * @throws IOException If the address cannot be listened on.
+     */
+    public TBSNetworkServer(TBSServer server, InetSocketAddress address, int threadCount) throws IOException
+    {
+        this.requests = new AsyncTBSServerImpl(server, threadCount);
+        this.selector = Selector.open();
+        this.listener = ServerSocketChannel.open();
+        listener.bind(address, 1024);
+        listener.configureBlocking(false);
+        listener.register(selector, SelectionKey.OP_ACCEPT);
+
+        this.selectorThread = new Thread(this::run, "tbs-network-" + getPort());
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+    /**
+     * @return The port the server is listening on.
+     */
+    public int getPort()
+    {
+        return listener.socket().getLocalPort();
+    }
+
+    /**
+     * Stops accepting connections and closes every open one. Requests already being carried out still finish, but
+     * their responses are not sent. The underlying server is not closed.
+     * @throws IOException If the selector thread is interrupted while stopping.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        running = false;
+        selector.wakeup();
+        try
+        {
+            selectorThread.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while stopping the network server.", e);
+        }
+        requests.close();
+    }
+
+    /**
+     * The selector loop. Every connection is only ever read, written and closed from here.
+     */
+    private void run()
+    {
+        try
+        {
+            while (running)
+            {
+                selector.select();
+
+                Connection connection;
+                while ((connection = readyToWrite.poll()) != null)
+                {
+                    connection.flush();
+                }
+
+                for (SelectionKey key : selector.selectedKeys())
+                {
+                    if (!key.isValid())
+                    {
+                        continue;
+                    }
+                    if (key.isAcceptable())
+                    {
+                        accept();
+                        continue;
+                    }
+
+                    connection = (Connection) key.attachment();
+                    if (key.isReadable())
+                    {
+                        connection.read();
+                    }
+                    if (key.isValid() && key.isWritable())
+                    {
+                        connection.flush();
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        }
+        catch (IOException e)
+        {
+            //the selector itself failed, so nothing more can be served
+            System.err.println("The network server stopped: " + e);
+        }
+        finally
+        {
+            for (SelectionKey key : selector.keys())
+            {
+                closeQuietly(key.channel());
+            }
+            closeQuietly(selector);
+        }
+    }
+
+    /**
+     * Accepts every connection that is waiting. A connection that cannot be set up is closed on its own, and if no
+     * connection can be accepted, the next select tries again, so the connections already open are still served.
+     */
+    private void accept()
+    {
+        while (true)
+        {
+            SocketChannel channel;
+            try
+            {
+                channel = listener.accept();
+            }
+            catch (IOException e)
+            {
+                System.err.println("A connection could not be accepted: " + e);
+                return;
+            }
+            if (channel == null)
+            {
+                return;
+            }
+
+            try
+            {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                Connection connection = new Connection(channel);
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            }
+            catch (IOException e)
+            {
+                closeQuietly(channel);
+            }
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable)
+    {
+        try
+        {
+            closeable.close();
+        }
+        catch (IOException e)
+        {
+            //nothing more can be done with it
+        }
+    }
+
+    /**
+     * The state of one client connection.
+     */
+    private class Connection
+    {
+        private final SocketChannel channel;
+        private SelectionKey key;
+        private ByteBuffer input = ByteBuffer.allocate(READ_BUFFER_BYTES); //in write mode between reads
+
+        private final Queue<ByteBuffer> output = new ConcurrentLinkedQueue<ByteBuffer>();
+        private final ByteBuffer[] gathered = new ByteBuffer[MAX_GATHERED_WRITES];
+        private final AtomicBoolean flushQueued = new AtomicBoolean(false);
+        private final AtomicInteger outstanding = new AtomicInteger(0); //read, but the response not yet written
+        private volatile boolean closed;
+
+        private Connection(SocketChannel channel)
+        {
+            this.channel = channel;
+        }
+
+        /**
+         * Reads what has arrived, and carries out every complete request in it.
+         */
+        private void read()
+        {
+            try
+            {
+                if (channel.read(input) < 0)
+                {
+                    close();
+                    return;
+                }
+            }
+            catch (IOException e)
+            {
+                close();
+                return;
+            }
+            dispatchFrames();
+        }
+
+        /**
+         * Carries out the complete requests in the input buffer, until it runs out of them or the connection has too
+         * many requests outstanding, in which case reading stops until responses have been written.
+         */
+        private void dispatchFrames()
+        {
+            input.flip();
+            while (input.remaining() >= TBSProtocol.LENGTH_BYTES && outstanding.get() < MAX_OUTSTANDING_REQUESTS)
+            {
+                int length = input.getInt(input.position());
+                if (length < 0 || length > TBSProtocol.MAX_FRAME_BYTES)
+                {
+                    close();
+                    return;
+                }
+                if (input.remaining() < TBSProtocol.LENGTH_BYTES + length)
+                {
+                    break;
+                }
+
+                input.position(input.position() + TBSProtocol.LENGTH_BYTES);
+                ByteBuffer frame = input.slice();
+                frame.limit(length);
+                input.position(input.position() + length);
+                if (!dispatch(frame))
+                {
+                    close();
+                    return;
+                }
+            }
+
+            //make room for the rest of a frame that is larger than the buffer, checking its length first, since the
+            //loop may have stopped before reaching it
+            if (input.remaining() >= TBSProtocol.LENGTH_BYTES)
+            {
+                int length = input.getInt(input.position());
+                if (length < 0 || length > TBSProtocol.MAX_FRAME_BYTES)
+                {
+                    close();
+                    return;
+                }
+                int needed = TBSProtocol.LENGTH_BYTES + length;
+                if (needed > input.capacity())
+                {
+                    input = ByteBuffer.allocate(needed).put(input);
+                    setReading(outstanding.get() < MAX_OUTSTANDING_REQUESTS);
+                    return;
+                }
+            }
+            input.compact();
+            setReading(outstanding.get() < MAX_OUTSTANDING_REQUESTS);
+        }
+
+        /**
+         * Decodes a request and hands it to the server. The parameters are decoded before this returns, so the frame
+         * can then be overwritten.
+         * @param frame The request frame, without its length.
+         * @return False if the frame is not a valid request.
+         */
+        private boolean dispatch(ByteBuffer frame)
+        {
+            int requestID;
+            CompletableFuture<?> result;
+            try
+            {
+                requestID = frame.getInt();
+                result = call(frame.get(), frame);
+            }
+            catch (RuntimeException e)
+            {
+                return false;
+            }
+
+            outstanding.incrementAndGet();
+            result.whenComplete((value, error) -> respond(requestID, value, error));
+            return true;
+        }
+
+        /**
+         * @param request The kind of request.
+         * @param frame The request's parameters.
+         * @return The future result of the request.
+         * @throws RuntimeException If the request or its parameters are not valid.
+         */
+        private CompletableFuture<?> call(byte request, ByteBuffer frame)
+        {
+            switch (request)
+            {
+                case TBSProtocol.INITIALISE:
+                    return requests.initialiseAsync(TBSProtocol.getString(frame));
+                case TBSProtocol.INITIALISE_PATHS:
+                    return requests.initialiseAsync(TBSProtocol.getStrings(frame));
+                case TBSProtocol.GET_THEATRE_IDS:
+                    return requests.getTheatreIDsAsync();
+                case TBSProtocol.GET_ARTIST_IDS:
+                    return requests.getArtistIDsAsync();
+                case TBSProtocol.GET_ARTIST_NAMES:
+                    return requests.getArtistNamesAsync();
+                case TBSProtocol.GET_ACT_IDS_FOR_ARTIST:
+                    return requests.getActIDsForArtistAsync(TBSProtocol.getString(frame));
+                case TBSProtocol.GET_PERFORMANCE_IDS_FOR_ACT:
+                    return requests.getPerformanceIDsForActAsync(TBSProtocol.getString(frame));
+                case TBSProtocol.GET_TICKET_IDS_FOR_PERFORMANCE:
+                    return requests.getTicketIDsForPerformanceAsync(TBSProtocol.getString(frame));
+                case TBSProtocol.ADD_ARTIST:
+                    return requests.addArtistAsync(TBSProtocol.getString(frame));
+                case TBSProtocol.ADD_ACT:
+                    return requests.addActAsync(TBSProtocol.getString(frame), TBSProtocol.getString(frame),
+                            frame.getInt());
+                case TBSProtocol.SCHEDULE_PERFORMANCE:
+                    return requests.schedulePerformanceAsync(TBSProtocol.getString(frame),
+                            TBSProtocol.getString(frame), TBSProtocol.getString(frame), TBSProtocol.getString(frame),
+                            TBSProtocol.getString(frame));
+                case TBSProtocol.ISSUE_TICKET:
+                    return requests.issueTicketAsync(TBSProtocol.getString(frame), frame.getInt(), frame.getInt());
+                case TBSProtocol.ISSUE_TICKETS:
+                    return requests.issueTicketsAsync(TBSProtocol.getString(frame), TBSProtocol.getStrings(frame));
+                case TBSProtocol.FIND_BEST_AVAILABLE:
+                    return requests.findBestAvailableAsync(TBSProtocol.getString(frame), frame.getInt(),
+                            TBSProtocol.getTier(frame), TBSProtocol.getBoolean(frame));
+                case TBSProtocol.SEATS_AVAILABLE:
+                    return requests.seatsAvailableAsync(TBSProtocol.getString(frame));
+                case TBSProtocol.SEATS_AVAILABLE_RANGES:
+                    return requests.seatsAvailableRangesAsync(TBSProtocol.getString(frame));
+                case TBSProtocol.SALES_REPORT:
+                    return requests.salesReportAsync(TBSProtocol.getString(frame));
+                case TBSProtocol.PERFORMANCES_BETWEEN:
+                    return requests.performancesBetweenAsync(TBSProtocol.getString(frame),
+                            TBSProtocol.getString(frame), TBSProtocol.getString(frame), frame.getInt(),
+                            frame.getInt());
+                case TBSProtocol.FREE_SLOTS:
+                    return requests.freeSlotsAsync(TBSProtocol.getString(frame), TBSProtocol.getString(frame));
+                case TBSProtocol.REVENUE_BY_THEATRE:
+                    return requests.revenueByTheatreAsync();
+                case TBSProtocol.REVENUE_BY_ARTIST:
+                    return requests.revenueByArtistAsync();
+                case TBSProtocol.REVENUE_BY_DAY:
+                    return requests.revenueByDayAsync();
+                case TBSProtocol.DUMP:
+                    return requests.dumpAsync();
+                default:
+                    throw new IllegalArgumentException("There is no request " + request + ".");
+            }
+        }
+
+        /**
+         * Queues the response to a request, and has the selector loop write it. Called on whichever thread completed
+         * the request.
+         */
+        @SuppressWarnings("unchecked")
+        private void respond(int requestID, Object value, Throwable error)
+        {
+            if (closed || !running)
+            {
+                return;
+            }
+
+            TBSProtocol.FrameBuilder response = new TBSProtocol.FrameBuilder().putInt(requestID);
+            if (error != null)
+            {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                response.putByte(TBSProtocol.FAILED).putString(cause.toString());
+            }
+            else if (value instanceof String)
+            {
+                response.putByte(TBSProtocol.OK).putByte(TBSProtocol.STRING_RESULT).putString((String) value);
+            }
+            else
+            {
+                response.putByte(TBSProtocol.OK).putByte(TBSProtocol.LIST_RESULT)
+                        .putStrings((List<String>) value);
+            }
+
+            ByteBuffer frame;
+            try
+            {
+                frame = response.toFrame();
+            }
+            catch (IllegalStateException e)
+            {
+                frame = new TBSProtocol.FrameBuilder().putInt(requestID).putByte(TBSProtocol.FAILED)
+                        .putString(e.toString()).toFrame();
+            }
+            output.add(frame);
+
+            //one wakeup covers every response queued before the loop gets to this connection
+            if (flushQueued.compareAndSet(false, true))
+            {
+                readyToWrite.add(this);
+                selector.wakeup();
+            }
+        }
+
+        /**
+         * Writes as many queued responses as the socket will take, and resumes reading once few enough requests are
+         * outstanding.
+         */
+        private void flush()
+        {
+            if (closed)
+            {
+                return;
+            }
+            flushQueued.set(false);
+
+            try
+            {
+                while (!output.isEmpty())
+                {
+                    int count = 0;
+                    for (ByteBuffer frame : output)
+                    {
+                        gathered[count++] = frame;
+                        if (count == gathered.length)
+                        {
+                            break;
+                        }
+                    }
+                    channel.write(gathered, 0, count);
+
+                    int written = 0;
+                    while (written < count && !gathered[written].hasRemaining())
+                    {
+                        output.poll();
+                        written++;
+                    }
+                    outstanding.addAndGet(-written);
+                    if (written < count)
+                    {
+                        break; //the socket is full
+                    }
+                }
+            }
+            catch (IOException e)
+            {
+                close();
+                return;
+            }
+
+            setWriting(!output.isEmpty());
+            if ((key.interestOps() & SelectionKey.OP_READ) == 0 && outstanding.get() < MAX_OUTSTANDING_REQUESTS)
+            {
+                //requests that were held back may already be in the buffer
+                dispatchFrames();
+            }
+        }
+
+        private void setReading(boolean reading)
+        {
+            setInterest(SelectionKey.OP_READ, reading);
+        }
+
+        private void setWriting(boolean writing)
+        {
+            setInterest(SelectionKey.OP_WRITE, writing);
+        }
+
+        private void setInterest(int operation, boolean interested)
+        {
+            if (!closed)
+            {
+                int interestOps = key.interestOps();
+                key.interestOps(interested ? interestOps | operation : interestOps & ~operation);
+            }
+        }
+
+        private void close()
+        {
+            closed = true;
+            key.cancel();
+            closeQuietly(channel);
+            output.clear();
+        }
+    }
+
+    /**
+     * Runs a network server on the loopback address until the process is stopped.
+     * @param args The port to listen on, then optionally the path of a journal file to keep.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        if (args.length < 1 || args.length > 2)
+        {
+            System.err.println("Usage: java tbs.server.TBSNetworkServer <port> [journal path]");
+            System.exit(2);
+        }
+
+        TBSServerImpl server = args.length == 2 ? new TBSServerImpl(args[1]) : new TBSServerImpl();
+        TBSNetworkServer networkServer = new TBSNetworkServer(server,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(args[0])),
+                Runtime.getRuntime().availableProcessors() * 16);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try
+            {
+                networkServer.close();
+                server.close();
+            }
+            catch (IOException e)
+            {
+                System.err.println("The server did not shut down cleanly: " + e);
+            }
+        }));
+        System.out.println("Listening on port " + networkServer.getPort());
+        networkServer.selectorThread.join();
+    }
+}
@@ -0,0 +1,253 @@
+package tbs.server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The binary protocol spoken between TBSNetworkServer and its clients. Every message is a frame: an int giving the
+ * number of bytes that follow, then that many bytes. All numbers are big-endian.
+ * <p>
+ * A request frame holds an int request ID chosen by the client, a byte naming the TBSServer request, then the
+ * request's parameters in order. A response frame holds the request ID it answers and a status byte. If the status is
+ * OK, a byte telling whether the result is a string or a list of strings follows, then the result. If the status is
+ * FAILED, the server threw while carrying out the request, and a message follows instead.
+ * <p>
+ * A string is an int byte count, then its UTF-8 bytes, with a count of -1 for null. A list of strings is an int
+ * count, then the strings, with a count of -1 for null. A boolean is a byte of 0 or 1, and a SeatTier is a byte
+ * holding its ordinal.
+ * <p>
+ * A client may send many requests without waiting for their responses, and responses may come back in any order.
+ */
+public final class TBSProtocol
+{
+    public static final int LENGTH_BYTES = 4;
+    public static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+
+    public static final byte INITIALISE = 1;
+    public static final byte INITIALISE_PATHS = 2;
+    public static final byte GET_THEATRE_IDS = 3;
+    public static final byte GET_ARTIST_IDS = 4;
+    public static final byte GET_ARTIST_NAMES = 5;
+    public static final byte GET_ACT_IDS_FOR_ARTIST = 6;
+    public static final byte GET_PERFORMANCE_IDS_FOR_ACT = 7;
+    public static final byte GET_TICKET_IDS_FOR_PERFORMANCE = 8;
+    public static final byte ADD_ARTIST = 9;
+    public static final byte ADD_ACT = 10;
+    public static final byte SCHEDULE_PERFORMANCE = 11;
+    public static final byte ISSUE_TICKET = 12;
+    public static final byte ISSUE_TICKETS = 13;
+    public static final byte FIND_BEST_AVAILABLE = 14;
+    public static final byte SEATS_AVAILABLE = 15;
+    public static final byte SEATS_AVAILABLE_RANGES = 16;
+    public static final byte SALES_REPORT = 17;
+    public static final byte PERFORMANCES_BETWEEN = 18;
+    public static final byte FREE_SLOTS = 19;
+    public static final byte REVENUE_BY_THEATRE = 20;
+    public static final byte REVENUE_BY_ARTIST = 21;
+    public static final byte REVENUE_BY_DAY = 22;
+    public static final byte DUMP = 23;
+
+    public static final byte OK = 0;
+    public static final byte FAILED = 1;
+
+    public static final byte STRING_RESULT = 0;
+    public static final byte LIST_RESULT = 1;
+
+    private static final SeatTier[] TIERS = SeatTier.values();
+
+    private TBSProtocol()
+    {
+    }
+
+    /**
+     * Builds a frame in a growing array, leaving room at the front for its length.
+     */
+    public static class FrameBuilder
+    {
+        private byte[] bytes = new byte[128];
+        private int size = LENGTH_BYTES;
+
+        /**
+         * @param value A byte to append.
+         * @return This builder.
+         */
+        public FrameBuilder putByte(byte value)
+        {
+            ensureCapacity(1);
+            bytes[size++] = value;
+            return this;
+        }
+
+        /**
+         * @param value An int to append.
+         * @return This builder.
+         */
+        public FrameBuilder putInt(int value)
+        {
+            ensureCapacity(4);
+            bytes[size++] = (byte) (value >>> 24);
+            bytes[size++] = (byte) (value >>> 16);
+            bytes[size++] = (byte) (value >>> 8);
+            bytes[size++] = (byte) value;
+            return this;
+        }
+
+        /**
+         * @param value A boolean to append.
+         * @return This builder.
+         */
+        public FrameBuilder putBoolean(boolean value)
+        {
+            return putByte(value ? (byte) 1 : (byte) 0);
+        }
+
+        /**
+         * @param tier A price tier to append.
+         * @return This builder.
+         */
+        public FrameBuilder putTier(SeatTier tier)
+        {
+            return putByte((byte) tier.ordinal());
+        }
+
+        /**
+         * @param value A string to append, or null.
+         * @return This builder.
+         */
+        public FrameBuilder putString(String value)
+        {
+            if (value == null)
+            {
+                return putInt(-1);
+            }
+
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            putInt(encoded.length);
+            ensureCapacity(encoded.length);
+            System.arraycopy(encoded, 0, bytes, size, encoded.length);
+            size += encoded.length;
+            return this;
+        }
+
+        /**
+         * @param values A list of strings to append, or null.
+         * @return This builder.
+         */
+        public FrameBuilder putStrings(List<String> values)
+        {
+            if (values == null)
+            {
+                return putInt(-1);
+            }
+
+            putInt(values.size());
+            for (String value : values)
+            {
+                putString(value);
+            }
+            return this;
+        }
+
+        /**
+         * Fills in the frame's length.
+         * @return A buffer holding the whole frame, including its length, from position zero to its limit.
+         * @throws IllegalStateException If the frame is larger than MAX_FRAME_BYTES.
+         */
+        public ByteBuffer toFrame()
+        {
+            int length = size - LENGTH_BYTES;
+            if (length > MAX_FRAME_BYTES)
+            {
+                throw new IllegalStateException("A frame of " + length + " bytes is too large to send.");
+            }
+
+            ByteBuffer frame = ByteBuffer.wrap(bytes, 0, size);
+            frame.putInt(0, length);
+            return frame;
+        }
+
+        private void ensureCapacity(int extraBytes)
+        {
+            if (size + extraBytes > bytes.length)
+            {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extraBytes));
+            }
+        }
+    }
+
+    /**
+     * @param frame A frame's bytes, positioned at a string.
+     * @return The string, which may be null.
+     * @throws IllegalArgumentException If the frame does not hold a whole string at its position.
+     */
+    public static String getString(ByteBuffer frame)
+    {
+        int length = frame.getInt();
+        if (length == -1)
+        {
+            return null;
+        }
+        if (length < 0 || length > frame.remaining())
+        {
+            throw new IllegalArgumentException("A string of " + length + " bytes does not fit in the frame.");
+        }
+
+        String value = new String(frame.array(), frame.arrayOffset() + frame.position(), length,
+                StandardCharsets.UTF_8);
+        frame.position(frame.position() + length);
+        return value;
+    }
+
+    /**
+     * @param frame A frame's bytes, positioned at a list of strings.
+     * @return The list, which may be null.
+     * @throws IllegalArgumentException If the frame does not hold a whole list at its position.
+     */
+    public static List<String> getStrings(ByteBuffer frame)
+    {
+        int count = frame.getInt();
+        if (count == -1)
+        {
+            return null;
+        }
+        //every string takes at least its length, so a larger count cannot be genuine
+        if (count < 0 || count > frame.remaining() / 4)
+        {
+            throw new IllegalArgumentException("A list of " + count + " strings does not fit in the frame.");
+        }
+
+        List<String> values = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++)
+        {
+            values.add(getString(frame));
+        }
+        return values;
+    }
+
+    /**
+     * @param frame A frame's bytes, positioned at a boolean.
+     * @return The boolean.
+     */
+    public static boolean getBoolean(ByteBuffer frame)
+    {
+        return frame.get() != 0;
+    }
+
+    /**
+     * @param frame A frame's bytes, positioned at a price tier.
+     * @return The price tier.
+     * @throws IllegalArgumentException If the byte is not the ordinal of a tier.
+     */
+    public static SeatTier getTier(ByteBuffer frame)
+    {
+        int ordinal = frame.get();
+        if (ordinal < 0 || ordinal >= TIERS.length)
+        {
+            throw new IllegalArgumentException("There is no seat tier " + ordinal + ".");
+        }
+        return TIERS[ordinal];
+    }
+}
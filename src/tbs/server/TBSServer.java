@@ -38,6 +38,17 @@ public interface TBSServer {
 	 */
 	String initialise(String path);
 
+	/**
+	 * Request the server to add the theatre details found in several files, in the same format as for initialise.
+	 * Theatre IDs must be unique across all of the files and the theatres already on the server.
+	 * <p>If any path has no file or directory associated with it, or any file has the wrong format or a duplicate
+	 * theatre ID, then the request fails and no theatres are added.
+	 * @param paths The paths of the files to use. A path to a directory stands for every file in that directory.
+	 * @return An empty string if the initialisation is successful, otherwise a message explaining what went wrong
+	 * beginning with ERROR. Problems with the contents of a file give the file name and line number.
+	 */
+	String initialise(List<String> paths);
+
 	/**
 	 * Request a list of the IDs for all theatres.
 	 * @return A list of theatre IDs in alphabetical order.
@@ -141,7 +152,9 @@ public interface TBSServer {
 	 * For example, if the seating dimension is 5, then rows 1-2 will be premium, and 3-5 cheap.
 	 * 
 	 * <p>If there is a problem with the act ID (is not unique), theatre ID (no such theatre exists),
-	 * or other parameters (wrong format), then the request fails.  
+	 * or other parameters (wrong format), then the request fails.
+	 * <p>The request also fails if the performance would overlap another performance in the same theatre. A
+	 * performance takes up the theatre from its start time until its start time plus the duration of its act.
 	 * @param actID The ID that identifies the act. It must be unique with respect to acts already managed by the server.
 	 * @param theatreID The ID of the theatre. There must be a theatre with this ID.
 	 * @param startTimeStr The start time for this performance. It must be in the ISO8601 format yyyy-mm-ddThh:mm (zero-padded)
@@ -171,6 +184,41 @@ public interface TBSServer {
 	 */
 	String issueTicket(String performanceID, int rowNumber, int seatNumber);
 	
+	/**
+	 * Request the server to issue tickets for a group of seats for the performance with the specified ID,
+	 * as a single step. Either a ticket is issued for every seat, or no tickets are issued at all.
+	 * <p>If there is a problem with the performance ID (no performance with that ID exists), or any of the seats
+	 * (the seat doesn't exist, a ticket for it has already been issued, or it appears more than once), then the
+	 * request fails.
+	 * @param performanceID The ID for the performance the tickets should be issued for.
+	 * @param seats The seats to issue tickets for. The format of each string is &lt;row number&gt; "\t"
+	 * &lt;seat position&gt;, the same as the entries returned by seatsAvailable.
+	 * @return A list of the IDs for the new tickets, in the same order as the seats, if the issue is successful.
+	 * If the request fails, then the only entry in the list will be a message explaining what went wrong,
+	 * beginning with ERROR.
+	 */
+	List<String> issueTickets(String performanceID, List<String> seats);
+
+	/**
+	 * Request the server to find the best block of adjacent available seats in one row, in the specified price tier,
+	 * for the performance with the specified ID. The best block is in the row closest to the stage that has room for
+	 * it, and within that row is the block closest to the middle. Premium seats are in rows 1 to
+	 * floor(Number of Rows/2), and cheap seats are in the remaining rows.
+	 * <p>If hold is true, tickets for the block are issued in a single step, as with issueTickets.
+	 * <p>If there is a problem with the performance ID (no performance with that ID exists), the count (is less than
+	 * one or more than the number of seats in a row), or there is no row with enough adjacent available seats, then
+	 * the request fails.
+	 * @param performanceID The ID for the performance to find seats for.
+	 * @param count The number of adjacent seats wanted.
+	 * @param tier The price tier the seats must be in.
+	 * @param hold Whether to issue the tickets for the seats that are found.
+	 * @return If hold is false, a list of the seats found, in the same format as the entries returned by
+	 * seatsAvailable. If hold is true, a list of the IDs for the new tickets, in seat order.
+	 * If the request fails, then the only entry in the list will be a message explaining what went wrong,
+	 * beginning with ERROR.
+	 */
+	List<String> findBestAvailable(String performanceID, int count, SeatTier tier, boolean hold);
+
 	/**
 	 * Request the server to supply a list of the seats that are still available for the performance with
 	 * the specified ID.
@@ -186,6 +234,19 @@ public interface TBSServer {
 	 */
 	List<String> seatsAvailable(String performanceID);
 	
+	/**
+	 * Request the server to supply a compact list of the seats that are still available for the performance with
+	 * the specified ID, with one entry for each row that has available seats.
+	 * <p>The request fails if there is no performance with the specified ID.
+	 * @param performanceID The ID for the performance to determine the available seats for.
+	 * @return A list of strings, in row order. The format of each string is &lt;row number&gt; "\t" followed by the
+	 * runs of adjacent available seats in that row, separated by commas. A run is either a single seat position, or
+	 * &lt;first seat position&gt; "-" &lt;last seat position&gt; (e.g. "3\t1-12,15,17-20").
+	 * <p>If the request fails, then the only entry in the list will be a message explaining what went wrong,
+	 * beginning with ERROR.
+	 */
+	List<String> seatsAvailableRanges(String performanceID);
+
 	/**
 	 * Request the server to supply a list reporting the sales for the act with the specified ID.
 	 * <p>The request fails if there is no act with the specified ID.
@@ -200,6 +261,61 @@ public interface TBSServer {
 	 */
 	List<String> salesReport(String actID);
 	
+	/**
+	 * Request a list of the performances that start within a time range, in order of start time. Performances that
+	 * start at the same time are in order of performance ID.
+	 * <p>If there is a problem with the times (wrong format) or the theatre ID (no such theatre exists), then the
+	 * request fails.
+	 * @param fromTimeStr The start of the range, inclusive, in the ISO8601 format yyyy-mm-ddThh:mm.
+	 * @param toTimeStr The end of the range, inclusive, in the ISO8601 format yyyy-mm-ddThh:mm.
+	 * @param theatreID The ID of the theatre to list performances for, or null or empty for every theatre.
+	 * @param offset The number of matching performances to skip, for paging.
+	 * @param limit The greatest number of performances to list.
+	 * @return A list of strings, one per performance. The format of the string is:<br>
+	 *  &lt;performanceID&gt; "\t" &lt;start time&gt; "\t" &lt;theatre ID&gt;
+	 * <p>If the request fails, then the only entry in the list will be a message explaining what went wrong,
+	 * beginning with ERROR.
+	 */
+	List<String> performancesBetween(String fromTimeStr, String toTimeStr, String theatreID, int offset, int limit);
+
+	/**
+	 * Request a list of the times on one day when the theatre with the specified ID has no performance on. A
+	 * performance takes up the theatre from its start time until its start time plus the duration of its act.
+	 * <p>If there is a problem with the theatre ID (no such theatre exists) or the day (wrong format), then the
+	 * request fails.
+	 * @param theatreID The ID of the theatre.
+	 * @param dayStr The day, in the ISO8601 format yyyy-mm-dd.
+	 * @return A list of strings in time order, one per free slot. The format of the string is:<br>
+	 *  &lt;start time&gt; "\t" &lt;end time&gt;<br>
+	 *  with both times in the format yyyy-mm-ddThh:mm. The start time is inclusive and the end time exclusive, so a
+	 *  slot that lasts until midnight ends at 00:00 on the following day.
+	 * <p>If the request fails, then the only entry in the list will be a message explaining what went wrong,
+	 * beginning with ERROR.
+	 */
+	List<String> freeSlots(String theatreID, String dayStr);
+
+	/**
+	 * Request the server to supply the sales totals for every theatre.
+	 * @return A list of strings in order of theatre ID, one per theatre. The format of the string is:<br>
+	 *  &lt;theatre ID&gt; "\t" &lt;number of tickets sold&gt; "\t" &lt;total sales receipts&gt;
+	 */
+	List<String> revenueByTheatre();
+
+	/**
+	 * Request the server to supply the sales totals for every artist, across all of their acts.
+	 * @return A list of strings in order of artist ID, one per artist. The format of the string is:<br>
+	 *  &lt;artist ID&gt; "\t" &lt;number of tickets sold&gt; "\t" &lt;total sales receipts&gt;
+	 */
+	List<String> revenueByArtist();
+
+	/**
+	 * Request the server to supply the sales totals for every day that has a performance scheduled, grouped by the
+	 * day the performance starts on.
+	 * @return A list of strings in date order, one per day. The format of the string is:<br>
+	 *  &lt;date yyyy-mm-dd&gt; "\t" &lt;number of tickets sold&gt; "\t" &lt;total sales receipts&gt;
+	 */
+	List<String> revenueByDay();
+
 	/**
 	 * Request a list of strings containing information the TBS Server has that is relevant. Implement this how you
 	 * like to support any debugging you need to do.
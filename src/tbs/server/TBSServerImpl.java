@@ -1,42 +1,225 @@
 package tbs.server;
 
+import java.io.Closeable;
 import java.io.IOException;
-import java.nio.charset.Charset;
+import java.io.UncheckedIOException;
+import java.nio.LongBuffer;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Scanner;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * A server implementation that keeps track of threatre data, including, performers, acts, perforamnces, and tickets.
  * Implements TBSServer.
+ * <p>
+ * A server can keep a journal of every change made to it, so that its state survives a restart. A change is only
+ * reported as successful once its journal record is on disk. Its whole state can also be saved in a snapshot, after
+ * which the journal only needs to hold the changes made since.
  */
-public class TBSServerImpl implements TBSServer
+public class TBSServerImpl implements TBSServer, Closeable
 {
-
-    private final String THEATRE_NAME_MARKER = "THEATRE";
-    private final String THEATRE_CODE_MARKER = ".*";
+    //how many times findBestAvailable looks again when other buyers keep taking the block it found
+    private static final int MAX_HOLD_ATTEMPTS = 8;
 
     private UniqueItems<Theatre> theatres = new UniqueItems<Theatre>();
-    private UniqueItems<Artist> artists = new UniqueItems<Artist>();
-    private UniqueItems<Act> acts = new UniqueItems<Act>();
-    private UniqueItems<Performance> performances = new UniqueItems<Performance>();
+    private NumberedItems<Artist> artists = new NumberedItems<Artist>();
+    private Map<String, Artist> artistsByName = new ConcurrentHashMap<String, Artist>(); //lookup and duplicate checks
+    private Set<String> artistNames = new ConcurrentSkipListSet<String>(); //the map's name strings, kept in order
+    private NumberedItems<Act> acts = new NumberedItems<Act>(); //each act holds its own performances
+    private ConcurrentNavigableMap<String, SalesTally> dailySales = new ConcurrentSkipListMap<String, SalesTally>();
+    private PerformanceSchedule schedule = new PerformanceSchedule(); //every performance, indexed by start time
+    private volatile VersionedValue<List<String>> cachedArtistNames;
+
+    /*
+     * The collections above are safe for concurrent use on their own, and tickets are issued lock-free by each
+     * performance, with compare-and-set. Locks are only needed where a uniqueness check and an addition must happen as
+     * one step, and each collection has its own, so adding an artist never waits for theatres being loaded and nothing
+     * waits for a sale. On a server that keeps a journal, every change also takes the shared side of snapshotLock,
+     * below.
+     */
+    private final Object theatresLock = new Object();
+    private final Object artistsLock = new Object();
+
+    /*
+     * Catalog changes are appended to the journal before they are published, so anything that depends on them is
+     * always appended after them. Records carry the IDs that were handed out, so replaying them gives the same IDs.
+     */
+    private final Journal journal;
+    private final SeatStore seatStore;
+
+    /*
+     * If the server keeps a journal, every change is made to memory and appended to the journal while the read lock
+     * is held, and writeSnapshot holds the write lock, so each change is either in the snapshot or in the emptied
+     * journal, never lost between them. Changes only wait for the disk after letting go, so a snapshot never waits for
+     * a flush it does not need. Without a journal there is nothing to lose between the two, so changes, including
+     * every sale, take no lock at all.
+     */
+    private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
 
     /**
-     * An exception that occurs when reading a file.
+     * Creates and returns a server with nothing on it, that does not keep a journal.
      */
-    private static class TheatreParsingException extends RuntimeException
+    public TBSServerImpl()
     {
-        /**
-         * Create and returns a TheatreParsingException .
-         * @param response The error message of the exception.
-         */
-        public TheatreParsingException(String response)
+        this(new HeapSeatStore());
+    }
+
+    /**
+     * Creates and returns a server with nothing on it, that does not keep a journal.
+     * @param seatStore Where to keep the seats and sales totals of performances.
+     */
+    public TBSServerImpl(SeatStore seatStore)
+    {
+        this.seatStore = seatStore;
+        this.journal = Journal.disabled();
+    }
+
+    /**
+     * Creates and returns a server that keeps a journal of every change in the given file. If the file already
+     * exists, the changes in it are replayed first, giving the same state and IDs the server had when it stopped.
+     * <p>
+     * If a journal record cannot be written, the change is reported as failed and the server accepts no further
+     * changes. A ticket sale whose record failed stays taken in memory, but is not restored after a restart.
+     *
+     * @param journalPath The path of the journal file.
+     * @throws IOException If the journal cannot be read or written, or holds a change that cannot be replayed.
+     */
+    public TBSServerImpl(String journalPath) throws IOException
+    {
+        this(null, journalPath, new HeapSeatStore());
+    }
+
+    /**
+     * Creates and returns a server restored from a snapshot, and the journal of changes made since the snapshot was
+     * written. If the journal's changes are already in the snapshot, they are dropped.
+     *
+     * @param snapshotPath The path of a snapshot written by writeSnapshot.
+     * @param journalPath The path of the journal file, or null to not keep a journal.
+     * @throws IOException If the snapshot or journal cannot be read, or they do not belong together.
+     */
+    public TBSServerImpl(String snapshotPath, String journalPath) throws IOException
+    {
+        this(snapshotPath, journalPath, new HeapSeatStore());
+    }
+
+    /**
+     * Creates and returns a server restored from a snapshot and the journal of changes made since, either of which
+     * can be left out.
+     *
+     * @param snapshotPath The path of a snapshot written by writeSnapshot, or null to start with nothing.
+     * @param journalPath The path of the journal file, or null to not keep a journal.
+     * @param seatStore Where to keep the seats and sales totals of performances.
+     * @throws IOException If the snapshot or journal cannot be read, or they do not belong together.
+     */
+    public TBSServerImpl(String snapshotPath, String journalPath, SeatStore seatStore) throws IOException
+    {
+        this.seatStore = seatStore;
+        Replay replay = new Replay();
+        long journalGeneration = snapshotPath == null ? Journal.NO_GENERATION
+                : Snapshot.read(Paths.get(snapshotPath), replay);
+        this.journal = journalPath == null ? Journal.disabled()
+                : Journal.open(Paths.get(journalPath), replay, journalGeneration);
+    }
+
+    /**
+     * Saves the server's whole state in a snapshot, replacing any earlier snapshot at the same path. If the server
+     * keeps a journal, the journal is then emptied, so from now on the server should be restored from this snapshot
+     * and the journal together.
+     * <p>If the server keeps a journal, changes requested while the snapshot is written wait for it to finish, and are
+     * then journaled as usual. Otherwise they go ahead, and the snapshot may or may not include them.
+     *
+     * @param snapshotPath The path of the snapshot file.
+     * @throws IOException If the snapshot cannot be written, or the journal cannot be emptied.
+     */
+    public void writeSnapshot(String snapshotPath) throws IOException
+    {
+        snapshotLock.writeLock().lock();
+        try
+        {
+            Snapshot.write(Paths.get(snapshotPath), theatres, artists, acts, journal.getGeneration());
+            journal.reset();
+        }
+        finally
+        {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Starts a change to the server's state, holding a snapshot back until it is journaled if a journal is kept.
+     * Every call must be followed by a call to endChange.
+     */
+    private void beginChange()
+    {
+        if (journal.isEnabled())
         {
-            super(response);
+            snapshotLock.readLock().lock();
+        }
+    }
+
+    /**
+     * Ends a change started by beginChange.
+     */
+    private void endChange()
+    {
+        if (journal.isEnabled())
+        {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes any pending journal records and closes the journal, then frees the seat store.
+     * @throws IOException If the records could not be written.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            journal.close();
+        }
+        finally
+        {
+            seatStore.close();
+        }
+    }
+
+    /**
+     * Waits for a journal record to reach the disk.
+     * @param journalSequence The sequence number of the record.
+     * @return True if the record is on disk, false if it could not be written.
+     */
+    private boolean isDurable(long journalSequence)
+    {
+        try
+        {
+            journal.awaitDurable(journalSequence);
+            return true;
+        }
+        catch (IOException e)
+        {
+            return false;
         }
     }
 
@@ -62,23 +245,35 @@ public class TBSServerImpl implements TBSServer
      */
     public String initialise(String path)
     {
+        long journalSequence;
         try
         {
-            //Get every line from the given file
-            Path filePath = Paths.get(path);
-            List<String> lines = Files.readAllLines(filePath, Charset.defaultCharset());
-
-            //Loop through every line, check if the format is correct and that each code is unique to the server.
-            //If all checks are successful, add it to the server.
-            for (String line : lines)
+            //Stream the file, checking every line's format and that each code is unique to the file and the server.
+            //Nothing is added unless every line passes.
+            synchronized (theatresLock)
             {
-                Theatre newTheatre = parseLineToTheater(line);
-                checkUniqueness(newTheatre);
-                theatres.add(newTheatre);
+                List<Theatre> newTheatres = new TheatreLoader().load(Paths.get(path),
+                        theatreID -> theatres.findByID(theatreID) != null);
+                beginChange();
+                try
+                {
+                    journalSequence = journal.appendTheatres(newTheatres);
+                    for (Theatre newTheatre : newTheatres)
+                    {
+                        theatres.add(newTheatre);
+                    }
+                }
+                catch (IOException e)
+                {
+                    return ResponseMessages.JOURNAL_ERR_MSG.getDescription();
+                }
+                finally
+                {
+                    endChange();
+                }
             }
-
         }
-        catch (IOException e)
+        catch (IOException | InvalidPathException e)
         {
             return ResponseMessages.FILE_NOT_FOUND_ERR_MSG.getDescription();
         }
@@ -87,78 +282,164 @@ public class TBSServerImpl implements TBSServer
             return e.getMessage();
         }
 
+        if (!isDurable(journalSequence))
+        {
+            return ResponseMessages.JOURNAL_ERR_MSG.getDescription();
+        }
+
         //If the try block terminates peacefully,
         //return a success message
         return ResponseMessages.FILE_FOUND_SUCCESS_MSG.getDescription();
     }
 
     /**
-     * Check if a given line is of the valid format.
+     * Request the server to add the theatre details found in several files, in the same format as for initialise.
+     * The files are parsed in parallel. Theatre IDs must be unique across all of the files and the theatres already
+     * on the server.
+     * <p>If any path has no file or directory associated with it, or any file has the wrong format or a duplicate
+     * theatre ID, then the request fails and no theatres are added.
      *
-     * The file format is, each line consists of:
-     * "THEATRE" "\t" theatre ID "\t" seating dimension "\t" floor area
-     *
-     * @param inputLine the given line on which the function checks for format validity
-     * @return a Theatre objectm with floor and seating information.
-     * @throws TheatreParsingException
+     * @param paths The paths of the files to use. A path to a directory stands for every file in that directory.
+     * @return An empty string if the initialisation is successful, otherwise a message explaining what went wrong
+     * beginning with ERROR. Problems with the contents of a file give the file name and line number. If several files
+     * have problems, the one reported is the first in the order the files were given.
      */
-    private Theatre parseLineToTheater(String inputLine) throws TheatreParsingException
+    @Override
+    public String initialise(List<String> paths)
     {
-        Scanner lineScanner = new Scanner(inputLine);
+        long journalSequence;
         try
         {
-            if (!lineScanner.hasNext(THEATRE_NAME_MARKER))  //Check for theatre marker
+            List<Path> files = new ArrayList<Path>();
+            for (String path : paths)
             {
-                throw new TheatreParsingException(ResponseMessages.FILE_FORMAT_ERR_MSG.getDescription());
+                files.addAll(filesAt(Paths.get(path)));
             }
 
-            lineScanner.next();
-
-            if (!lineScanner.hasNext(THEATRE_CODE_MARKER)) //Check for code marker
+            //parse every file at the same time, each without knowing about the others
+            List<Callable<List<Theatre>>> parsers = new ArrayList<Callable<List<Theatre>>>();
+            for (Path file : files)
             {
-                throw new TheatreParsingException(ResponseMessages.FILE_FORMAT_ERR_MSG.getDescription());
+                parsers.add(() -> new TheatreLoader().load(file, theatreID -> theatres.findByID(theatreID) != null));
             }
+            List<Future<List<Theatre>>> parsedFiles = ForkJoinPool.commonPool().invokeAll(parsers);
 
-            String code = lineScanner.next();
-
-            if (!lineScanner.hasNextInt()) //Check for seating dimension
+            //then merge them in order, checking IDs across files, and add nothing unless every file passes
+            synchronized (theatresLock)
             {
-                throw new TheatreParsingException(ResponseMessages.FILE_FORMAT_ERR_MSG.getDescription());
-            }
-
-            int seatingDimension = lineScanner.nextInt();
+                List<Theatre> newTheatres = new ArrayList<Theatre>();
+                Set<String> newIDs = new HashSet<String>();
+                for (int fileIndex = 0; fileIndex < files.size(); fileIndex++)
+                {
+                    String fileName = files.get(fileIndex).toString();
+                    List<Theatre> fileTheatres = parsedTheatres(parsedFiles.get(fileIndex), fileName);
+                    for (int i = 0; i < fileTheatres.size(); i++)
+                    {
+                        Theatre newTheatre = fileTheatres.get(i);
+                        if (!newIDs.add(newTheatre.getID()) || theatres.findByID(newTheatre.getID()) != null)
+                        {
+                            return ResponseMessages.DUPLICATE_CODE_ERR_MSG.atLine(fileName, i + 1);
+                        }
+                        newTheatres.add(newTheatre);
+                    }
+                }
 
-            if (!lineScanner.hasNextInt()) //Check for floor area
-            {
-                throw new TheatreParsingException(ResponseMessages.FILE_FORMAT_ERR_MSG.getDescription());
+                beginChange();
+                try
+                {
+                    journalSequence = journal.appendTheatres(newTheatres);
+                    for (Theatre newTheatre : newTheatres)
+                    {
+                        theatres.add(newTheatre);
+                    }
+                }
+                catch (IOException e)
+                {
+                    return ResponseMessages.JOURNAL_ERR_MSG.getDescription();
+                }
+                finally
+                {
+                    endChange();
+                }
             }
+        }
+        catch (IOException | InvalidPathException e)
+        {
+            return ResponseMessages.FILE_NOT_FOUND_ERR_MSG.getDescription();
+        }
+        catch (TheatreParsingException e)
+        {
+            return e.getMessage();
+        }
 
-            int floorSpace = lineScanner.nextInt();
-            return new Theatre(code, seatingDimension, floorSpace);
+        if (!isDurable(journalSequence))
+        {
+            return ResponseMessages.JOURNAL_ERR_MSG.getDescription();
         }
-        finally
+        return ResponseMessages.FILE_FOUND_SUCCESS_MSG.getDescription();
+    }
+
+    /**
+     * @param path A path to a file or a directory.
+     * @return The file itself, or every regular file in the directory in order of name.
+     * @throws IOException If there is nothing at the path, or the directory cannot be read.
+     */
+    private List<Path> filesAt(Path path) throws IOException
+    {
+        if (!Files.isDirectory(path))
+        {
+            return Collections.singletonList(path);
+        }
+
+        try (Stream<Path> entries = Files.list(path))
         {
-            lineScanner.close();
+            return entries.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
         }
     }
 
     /**
-     * Check if a given theatre has a code that already exists within the server.
-     * @param currentTheatre The given theatre.
-     * @throws TheatreParsingException
+     * Waits for a file to be parsed.
+     * @param parsedFile The result of parsing the file.
+     * @param fileName The name of the file, for error messages.
+     * @return The theatres in the file.
+     * @throws IOException If the file could not be read.
+     * @throws TheatreParsingException If the file has the wrong format, with the file name in the message.
      */
-    private void checkUniqueness(Theatre currentTheatre) throws TheatreParsingException
+    private List<Theatre> parsedTheatres(Future<List<Theatre>> parsedFile, String fileName) throws IOException
     {
-        if (getTheatreIDs().contains(currentTheatre.getID()))
+        try
         {
-            throw new TheatreParsingException(ResponseMessages.DUPLICATE_CODE_ERR_MSG.getDescription());
+            return parsedFile.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        catch (ExecutionException e)
+        {
+            //the pool may wrap the parser's exception on its way back to this thread, so look down the whole chain
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause())
+            {
+                if (cause instanceof TheatreParsingException)
+                {
+                    TheatreParsingException parsingException = (TheatreParsingException) cause;
+                    throw new TheatreParsingException(parsingException.getReason(), fileName,
+                            parsingException.getLineNumber());
+                }
+                if (cause instanceof IOException)
+                {
+                    throw (IOException) cause;
+                }
+            }
+            throw new IllegalStateException(e.getCause());
         }
     }
 
     /**
      * Request a list of the IDs for all theatres.
      *
-     * @return A list of theatre IDs in alphabetical order.
+     * @return A list of theatre IDs in alphabetical order, shared between callers and read-only.
      * <p>
      * <p><b>Marks: 1</b>
      */
@@ -171,7 +452,7 @@ public class TBSServerImpl implements TBSServer
     /**
      * Request a list of the IDs for all artists.
      *
-     * @return A list of artist IDs in alphabetical order.
+     * @return A list of artist IDs in alphabetical order, shared between callers and read-only.
      * <p>
      * <p><b>Marks: 1</b>
      */
@@ -184,24 +465,39 @@ public class TBSServerImpl implements TBSServer
     /**
      * Request a list of the names for all artists.
      *
-     * @return A list of artist names in alphabetical order
+     * @return A list of artist names in alphabetical order, shared between callers and read-only.
      * <p>
      * <p><b>Marks: 1</b>
      */
     @Override
     public List<String> getArtistNames()
     {
-        List<String> names = new ArrayList<String>();
-
-        //loop through all artists and add each of their names to a list
-        for (Artist artist : artists)
+        //the list is only copied again after an artist has been added, and the names are already kept in order
+        long version = artists.getVersion();
+        VersionedValue<List<String>> cached = cachedArtistNames;
+        if (cached != null && cached.isCurrent(version))
         {
-            String currentName = artist.getName();
-            names.add(currentName);
+            return cached.getValue();
         }
 
-        Collections.sort(names);
-        return names;
+        List<String> names = new ArrayList<String>(artistNames);
+        List<String> readOnlyNames = Collections.unmodifiableList(names);
+        cachedArtistNames = new VersionedValue<List<String>>(version, readOnlyNames);
+        return readOnlyNames;
+    }
+
+    /**
+     * Request the ID of the artist with the specified name, as when an artist is looked up by what a customer typed.
+     * <p>The request fails if there is no artist with that name.
+     *
+     * @param name The name of the artist.
+     * @return The ID of the artist if there is one, otherwise a message explaining what went wrong, beginning with
+     * ERROR.
+     */
+    public String getArtistIDForName(String name)
+    {
+        Artist artist = artistsByName.get(name);
+        return artist == null ? ResponseMessages.ARTIST_NOT_FOUND_ERR_MSG.getDescription() : artist.getID();
     }
 
     /**
@@ -277,12 +573,13 @@ public class TBSServerImpl implements TBSServer
     @Override
     public List<String> getTicketIDsForPerformance(String performanceID)
     {
-        Performance targetPerformance = performances.findByID(performanceID);
+        Performance targetPerformance = findPerformance(performanceID);
         List<String> ticketIDs = new ArrayList<String>();
 
         if (targetPerformance == null)
         {
             ticketIDs.add(ResponseMessages.PERFORMANCE_NOT_FOUND_ERR_MSG.getDescription());
+            return ticketIDs;
         }
 
         ticketIDs = targetPerformance.getIssuedTicketIDs();
@@ -309,20 +606,49 @@ public class TBSServerImpl implements TBSServer
         {
             return ResponseMessages.EMPTY_NAME_ERR_MSG.getDescription();
         }
-        else if (getArtistNames().contains(name))
+
+        String id;
+        long journalSequence;
+        synchronized (artistsLock)
         {
-            return ResponseMessages.DUPLICATE_NAME_ERR_MSG.getDescription();
+            if (artistsByName.containsKey(name))
+            {
+                return ResponseMessages.DUPLICATE_NAME_ERR_MSG.getDescription();
+            }
+
+            //the ID string is only made once, for the journal and the caller
+            long key = artists.nextKey();
+            id = ItemKey.format(key);
+            beginChange();
+            try
+            {
+                journalSequence = journal.appendArtist(id, name);
+                publishArtist(new Artist(name, key));
+            }
+            catch (IOException e)
+            {
+                return ResponseMessages.JOURNAL_ERR_MSG.getDescription();
+            }
+            finally
+            {
+                endChange();
+            }
         }
 
-        /*
-        * Gets the previous largest id, and adds one to its value.
-        * Create an artist and add it to the list. The return the id.
-        */
-        String id = artists.generateID(false, null);
-        Artist newArtist = new Artist(name, id);
-        artists.add(newArtist);
+        //wait for the disk outside the lock, so other artists can be added in the meantime
+        return isDurable(journalSequence) ? id : ResponseMessages.JOURNAL_ERR_MSG.getDescription();
+    }
 
-        return id;
+    /**
+     * Makes a new artist visible. It is indexed by name before it is added, so a cached name list is never taken to be
+     * current while it is missing the artist.
+     * @param artist The artist.
+     */
+    private void publishArtist(Artist artist)
+    {
+        artistsByName.put(artist.getName(), artist);
+        artistNames.add(artist.getName());
+        artists.add(artist);
     }
 
     /**
@@ -349,20 +675,39 @@ public class TBSServerImpl implements TBSServer
             return ResponseMessages.EMPTY_NAME_ERR_MSG.getDescription();
         }
 
-        Artist targetArtist = artists.findByID(artistID);
+        if (minutesDuration <= 0)
+        {
+            return ResponseMessages.DURATION_ERR_MSG.getDescription();
+        }
 
-        /*
-         * Gets the previous largest id, and adds one to its value.
-         * Create an act and add it to the list. Also
-         * The return the id.
-         */
-        String id = acts.generateID(false, null);
+        //everything is checked before the act is journaled, as a journaled act must be possible to replay
+        Artist targetArtist = artists.findByID(artistID);
+        if (targetArtist == null)
+        {
+            return ResponseMessages.ARTIST_NOT_FOUND_ERR_MSG.getDescription();
+        }
 
-        Act newAct = new Act(targetArtist, id, title, minutesDuration);
-        acts.add(newAct);
-        targetArtist.addAct(newAct);
+        long key = acts.nextKey();
+        String id = ItemKey.format(key);
+        long journalSequence;
+        beginChange();
+        try
+        {
+            journalSequence = journal.appendAct(id, title, artistID, minutesDuration);
+            Act newAct = new Act(targetArtist, key, title, minutesDuration);
+            acts.add(newAct);
+            targetArtist.addAct(newAct);
+        }
+        catch (IOException e)
+        {
+            return ResponseMessages.JOURNAL_ERR_MSG.getDescription();
+        }
+        finally
+        {
+            endChange();
+        }
 
-        return id;
+        return isDurable(journalSequence) ? id : ResponseMessages.JOURNAL_ERR_MSG.getDescription();
     }
 
     /**
@@ -375,6 +720,8 @@ public class TBSServerImpl implements TBSServer
      * <p>
      * <p>If there is a problem with the act ID (is not unique), theatre ID (no such theatre exists),
      * or other parameters (wrong format), then the request fails.
+     * <p>The request also fails if the performance would overlap another performance in the same theatre. A
+     * performance takes up the theatre from its start time until its start time plus the duration of its act.
      *
      * @param actID           The ID that identifies the act. It must be unique with respect to acts already managed by
      *                        the server.
@@ -398,20 +745,139 @@ public class TBSServerImpl implements TBSServer
         Act targetAct = acts.findByID(actID);
         Theatre targetTheatre = theatres.findByID(theatreID);
 
+        long startMinute = StartTime.parse(startTimeStr);
+
         //error checking
-        if (targetAct == null || targetTheatre == null)
+        if (targetAct == null || targetTheatre == null || startMinute == StartTime.INVALID
+                || !isPrice(premiumPriceStr) || !isPrice(cheapSeatsStr))
         {
             return ResponseMessages.SCHEDULE_PERFORMANCE_ERR_MSG.getDescription();
         }
 
-        UniqueItems<Performance> actPerformances = targetAct.getPerformances();
-        String performanceID = actPerformances.generateID(true, actID);
-        Performance newPerformance = new Performance(targetAct, targetTheatre, performanceID, startTimeStr,
-                premiumPriceStr, cheapSeatsStr);
-        performances.add(newPerformance);
-        targetAct.addPerformance(newPerformance);
+        //the theatre's own schedule rejects a performance that would overlap another one in the same room, and only
+        //then is an ID handed out, the performance created and journaled
+        long[] journalSequence = new long[1];
+        Performance newPerformance;
+        beginChange();
+        try
+        {
+            newPerformance = targetTheatre.getSchedule().addIfFree(startMinute,
+                    startMinute + targetAct.getDuration(), () -> {
+                        long key = targetAct.getPerformances().nextKey();
+                        Performance performance = createPerformance(targetAct, targetTheatre, key, startTimeStr,
+                                startMinute, premiumPriceStr, cheapSeatsStr);
+                        try
+                        {
+                            journalSequence[0] = journal.appendPerformance(performance.getID(), actID, theatreID,
+                                    startTimeStr, premiumPriceStr, cheapSeatsStr);
+                        }
+                        catch (IOException e)
+                        {
+                            throw new UncheckedIOException(e);
+                        }
+                        return performance;
+                    });
+            if (newPerformance != null)
+            {
+                publishPerformance(newPerformance);
+            }
+        }
+        catch (UncheckedIOException e)
+        {
+            return ResponseMessages.JOURNAL_ERR_MSG.getDescription();
+        }
+        finally
+        {
+            endChange();
+        }
+
+        if (newPerformance == null)
+        {
+            return ResponseMessages.THEATRE_BOOKED_ERR_MSG.getDescription();
+        }
+
+        return isDurable(journalSequence[0]) ? newPerformance.getID()
+                : ResponseMessages.JOURNAL_ERR_MSG.getDescription();
+    }
+
+    /**
+     * @param priceStr A price that should be in the format $d.
+     * @return True if the price is in the format $d, and the number of dollars fits in an int.
+     */
+    private static boolean isPrice(String priceStr)
+    {
+        if (priceStr == null || priceStr.length() < 2 || priceStr.length() > 11 || priceStr.charAt(0) != '$')
+        {
+            return false;
+        }
+
+        long dollars = 0;
+        for (int i = 1; i < priceStr.length(); i++)
+        {
+            char digit = priceStr.charAt(i);
+            if (digit < '0' || digit > '9')
+            {
+                return false;
+            }
+            dollars = dollars * 10 + (digit - '0');
+        }
+        return dollars <= Integer.MAX_VALUE;
+    }
 
-        return performanceID;
+    /**
+     * Creates a performance, without adding it anywhere.
+     * @param act The act the performance is part of.
+     * @param theatre The theatre the performance is held in.
+     * @param key The key of the performance.
+     * @param startTimeStr The start time, in the format yyyy-mm-ddThh:mm.
+     * @param startMinute The same time, as parsed by StartTime.
+     * @param premiumPriceStr The price of the premium seats, in the format $d.
+     * @param cheapSeatsStr The price of the cheap seats, in the format $d.
+     * @return The new performance.
+     */
+    private Performance createPerformance(Act act, Theatre theatre, long key, String startTimeStr, long startMinute,
+                                          String premiumPriceStr, String cheapSeatsStr)
+    {
+        SalesTally daySales = dailySales.computeIfAbsent(dayOf(startTimeStr), day -> new SalesTally());
+        return new Performance(act, theatre, key, startTimeStr, startMinute, premiumPriceStr, cheapSeatsStr,
+                daySales, seatStore.allocate(theatre.getLayout().getSeatCount()));
+    }
+
+    /**
+     * Finds a performance through its act, whose key is part of the performance's key.
+     * @param performanceID The ID of the performance.
+     * @return The performance, or null if there is no performance with that ID.
+     */
+    private Performance findPerformance(String performanceID)
+    {
+        long key = ItemKey.parse(performanceID);
+        if (key == ItemKey.INVALID || !ItemKey.hasParent(key))
+        {
+            return null;
+        }
+
+        Act act = acts.findByKey(ItemKey.parentOf(key));
+        return act == null ? null : act.getPerformances().findByKey(key);
+    }
+
+    /**
+     * Makes a performance that is already in its theatre's schedule visible everywhere else.
+     * @param performance The performance.
+     */
+    private void publishPerformance(Performance performance)
+    {
+        performance.getAct().addPerformance(performance);
+        schedule.add(performance);
+    }
+
+    /**
+     * @param startTimeStr A start time in the ISO8601 format yyyy-mm-ddThh:mm.
+     * @return The date part of the start time, yyyy-mm-dd.
+     */
+    private String dayOf(String startTimeStr)
+    {
+        int timeSeparator = startTimeStr.indexOf('T');
+        return timeSeparator < 0 ? startTimeStr : startTimeStr.substring(0, timeSeparator);
     }
 
     /**
@@ -432,31 +898,236 @@ public class TBSServerImpl implements TBSServer
     @Override
     public String issueTicket(String performanceID, int rowNumber, int seatNumber)
     {
-        Performance targetPerformance = performances.findByID(performanceID);
+        Performance targetPerformance = findPerformance(performanceID);
 
         if (targetPerformance == null)
         {
             return ResponseMessages.ISSUE_TICKET_ERR_MSG.getDescription();
         }
 
-        int numRows = targetPerformance.getTheatre().getNumRows();
-        if (rowNumber <= 0 || seatNumber <= 0 || rowNumber > numRows || seatNumber > numRows)
+        if (!targetPerformance.getLayout().isValidLocation(rowNumber, seatNumber))
         {
             return ResponseMessages.ISSUE_TICKET_ERR_MSG.getDescription();
         }
 
-        Seat targetSeat = targetPerformance.findSeatByLocation(rowNumber, seatNumber);
+        String ticketID;
+        long journalSequence;
+        beginChange();
+        try
+        {
+            ticketID = targetPerformance.issueTicket(rowNumber, seatNumber);
+            if (ticketID == null)
+            {
+                return ResponseMessages.ISSUE_TICKET_ERR_MSG.getDescription();
+            }
 
-        if (targetSeat.ticketIsIssued())
+            //the seat is only journaled once it is won, since nothing else can depend on the sale
+            int[] seatIndex = {targetPerformance.getLayout().seatIndex(rowNumber, seatNumber)};
+            journalSequence = journal.appendTickets(performanceID, seatIndex);
+        }
+        catch (IOException e)
         {
-            return ResponseMessages.ISSUE_TICKET_ERR_MSG.getDescription();
+            return ResponseMessages.JOURNAL_ERR_MSG.getDescription();
         }
-        else
+        finally
+        {
+            endChange();
+        }
+
+        return isDurable(journalSequence) ? ticketID : ResponseMessages.JOURNAL_ERR_MSG.getDescription();
+    }
+
+    /**
+     * Request the server to issue tickets for a group of seats for the performance with the specified ID,
+     * as a single step. Either a ticket is issued for every seat, or no tickets are issued at all.
+     * <p>If there is a problem with the performance ID (no performance with that ID exists), or any of the seats
+     * (the seat doesn't exist, a ticket for it has already been issued, or it appears more than once), then the
+     * request fails.
+     *
+     * @param performanceID The ID for the performance the tickets should be issued for.
+     * @param seats         The seats to issue tickets for. The format of each string is &lt;row number&gt; "\t"
+     *                      &lt;seat position&gt;, the same as the entries returned by seatsAvailable.
+     * @return A list of the IDs for the new tickets, in the same order as the seats, if the issue is successful.
+     * If the request fails, then the only entry in the list will be a message explaining what went wrong,
+     * beginning with ERROR.
+     */
+    @Override
+    public List<String> issueTickets(String performanceID, List<String> seats)
+    {
+        Performance targetPerformance = findPerformance(performanceID);
+        List<String> ticketIDs = new ArrayList<String>();
+
+        if (targetPerformance == null)
+        {
+            ticketIDs.add(ResponseMessages.ISSUE_TICKET_ERR_MSG.getDescription());
+            return ticketIDs;
+        }
+
+        //validate every seat before claiming any of them
+        SeatingLayout layout = targetPerformance.getLayout();
+        int[] seatIndexes = new int[seats.size()];
+        for (int i = 0; i < seatIndexes.length; i++)
+        {
+            seatIndexes[i] = parseSeatIndex(seats.get(i), layout);
+            if (seatIndexes[i] < 0)
+            {
+                ticketIDs.add(ResponseMessages.SEAT_FORMAT_ERR_MSG.getDescription());
+                return ticketIDs;
+            }
+        }
+
+        List<String> issuedIDs = issueAndJournalTickets(targetPerformance, performanceID, seatIndexes);
+        if (issuedIDs == null)
+        {
+            ticketIDs.add(ResponseMessages.ISSUE_TICKET_ERR_MSG.getDescription());
+            return ticketIDs;
+        }
+        return issuedIDs;
+    }
+
+    /**
+     * Issues the tickets for a group of seats as a single step, journals them, and waits for the record to reach the
+     * disk.
+     * @param performance The performance to issue the tickets for.
+     * @param performanceID The ID of the performance, as given by the caller.
+     * @param seatIndexes The row-major indexes of the seats.
+     * @return A list of the IDs for the new tickets, in the same order as the seats, or a list holding only the
+     * journal error message if the record could not be written, or null if any seat had already been taken.
+     */
+    private List<String> issueAndJournalTickets(Performance performance, String performanceID, int[] seatIndexes)
+    {
+        List<String> ticketIDs = null;
+        long journalSequence;
+        beginChange();
+        try
+        {
+            ticketIDs = performance.issueTickets(seatIndexes);
+            if (ticketIDs == null)
+            {
+                return null;
+            }
+            journalSequence = journal.appendTickets(performanceID, seatIndexes);
+        }
+        catch (IOException e)
+        {
+            journalSequence = -1;
+        }
+        finally
         {
-            targetPerformance.issueTicket(targetSeat);
+            endChange();
         }
 
-        return targetSeat.getTicketID();
+        //the seats stay taken either way, as for a single ticket whose record failed
+        if (journalSequence < 0 || !isDurable(journalSequence))
+        {
+            ticketIDs = new ArrayList<String>();
+            ticketIDs.add(ResponseMessages.JOURNAL_ERR_MSG.getDescription());
+        }
+        return ticketIDs;
+    }
+
+    /**
+     * Request the server to find the best block of adjacent available seats in one row, in the specified price tier,
+     * for the performance with the specified ID. The best block is in the row closest to the stage that has room for
+     * it, and within that row is the block closest to the middle. Premium seats are in rows 1 to
+     * floor(Number of Rows/2), and cheap seats are in the remaining rows.
+     * <p>If hold is true, tickets for the block are issued in a single step, as with issueTickets.
+     * <p>If there is a problem with the performance ID (no performance with that ID exists), the count (is less than
+     * one or more than the number of seats in a row), or there is no row with enough adjacent available seats, then
+     * the request fails. It also fails if hold is true and other buyers keep taking each block it finds.
+     *
+     * @param performanceID The ID for the performance to find seats for.
+     * @param count         The number of adjacent seats wanted.
+     * @param tier          The price tier the seats must be in.
+     * @param hold          Whether to issue the tickets for the seats that are found.
+     * @return If hold is false, a list of the seats found, in the same format as the entries returned by
+     * seatsAvailable. If hold is true, a list of the IDs for the new tickets, in seat order.
+     * If the request fails, then the only entry in the list will be a message explaining what went wrong,
+     * beginning with ERROR.
+     */
+    @Override
+    public List<String> findBestAvailable(String performanceID, int count, SeatTier tier, boolean hold)
+    {
+        Performance targetPerformance = findPerformance(performanceID);
+        List<String> result = new ArrayList<String>();
+
+        if (targetPerformance == null)
+        {
+            result.add(ResponseMessages.PERFORMANCE_NOT_FOUND_ERR_MSG.getDescription());
+            return result;
+        }
+
+        SeatingLayout layout = targetPerformance.getLayout();
+        if (count <= 0 || count > layout.getNumRows())
+        {
+            result.add(ResponseMessages.NO_ADJACENT_SEATS_ERR_MSG.getDescription());
+            return result;
+        }
+
+        //another buyer may take one of the seats between finding and holding the block, in which case look again
+        int[] seatIndexes = new int[count];
+        for (int attempt = 0; attempt < MAX_HOLD_ATTEMPTS; attempt++)
+        {
+            int firstSeat = targetPerformance.findBestAvailable(count, tier);
+            if (firstSeat < 0)
+            {
+                result.add(ResponseMessages.NO_ADJACENT_SEATS_ERR_MSG.getDescription());
+                return result;
+            }
+
+            for (int i = 0; i < count; i++)
+            {
+                seatIndexes[i] = firstSeat + i;
+            }
+
+            if (!hold)
+            {
+                for (int seatIndex : seatIndexes)
+                {
+                    result.add("" + layout.rowNumberOf(seatIndex) + "\t" + layout.seatNumberOf(seatIndex));
+                }
+                return result;
+            }
+
+            List<String> ticketIDs = issueAndJournalTickets(targetPerformance, performanceID, seatIndexes);
+            if (ticketIDs != null)
+            {
+                return ticketIDs;
+            }
+        }
+
+        result.add(ResponseMessages.NO_ADJACENT_SEATS_ERR_MSG.getDescription());
+        return result;
+    }
+
+    /**
+     * Converts a seat in the format &lt;row number&gt; "\t" &lt;seat position&gt; to its row-major index.
+     * @param seat The seat to convert.
+     * @param layout The seating layout the seat must belong to.
+     * @return The index of the seat, or -1 if the format is incorrect or there is no such seat in the layout.
+     */
+    private int parseSeatIndex(String seat, SeatingLayout layout)
+    {
+        int tabIndex = seat.indexOf('\t');
+        if (tabIndex < 0)
+        {
+            return -1;
+        }
+
+        try
+        {
+            int rowNumber = Integer.parseInt(seat.substring(0, tabIndex));
+            int seatNumber = Integer.parseInt(seat.substring(tabIndex + 1));
+            if (!layout.isValidLocation(rowNumber, seatNumber))
+            {
+                return -1;
+            }
+            return layout.seatIndex(rowNumber, seatNumber);
+        }
+        catch (NumberFormatException e)
+        {
+            return -1;
+        }
     }
 
     /**
@@ -476,7 +1147,7 @@ public class TBSServerImpl implements TBSServer
     @Override
     public List<String> seatsAvailable(String performanceID)
     {
-        Performance targetPerformance = performances.findByID(performanceID);
+        Performance targetPerformance = findPerformance(performanceID);
         List<String> availableSeats = new ArrayList<String>();
 
         if (targetPerformance == null)
@@ -491,6 +1162,103 @@ public class TBSServerImpl implements TBSServer
         return availableSeats;
     }
 
+    /**
+     * Request the server to supply a compact list of the seats that are still available for the performance with
+     * the specified ID, with one entry for each row that has available seats.
+     * <p>The request fails if there is no performance with the specified ID.
+     *
+     * @param performanceID The ID for the performance to determine the available seats for.
+     * @return A list of strings, in row order. The format of each string is &lt;row number&gt; "\t" followed by the
+     * runs of adjacent available seats in that row, separated by commas. A run is either a single seat position, or
+     * &lt;first seat position&gt; "-" &lt;last seat position&gt; (e.g. "3\t1-12,15,17-20").
+     * <p>If the request fails, then the only entry in the list will be a message explaining what went wrong,
+     * beginning with ERROR.
+     */
+    @Override
+    public List<String> seatsAvailableRanges(String performanceID)
+    {
+        Performance targetPerformance = findPerformance(performanceID);
+        List<String> availableRows = new ArrayList<String>();
+
+        if (targetPerformance == null)
+        {
+            availableRows.add(ResponseMessages.PERFORMANCE_NOT_FOUND_ERR_MSG.getDescription());
+            return availableRows;
+        }
+
+        StringBuilder currentRow = new StringBuilder();
+        int[] currentRowNumber = {0};
+        targetPerformance.visitAvailableRanges((rowNumber, firstSeatNumber, lastSeatNumber) -> {
+            if (rowNumber != currentRowNumber[0])
+            {
+                if (currentRow.length() > 0)
+                {
+                    availableRows.add(currentRow.toString());
+                    currentRow.setLength(0);
+                }
+                currentRow.append(rowNumber).append('\t');
+                currentRowNumber[0] = rowNumber;
+            }
+            else
+            {
+                currentRow.append(',');
+            }
+
+            currentRow.append(firstSeatNumber);
+            if (lastSeatNumber != firstSeatNumber)
+            {
+                currentRow.append('-').append(lastSeatNumber);
+            }
+            return true;
+        });
+
+        if (currentRow.length() > 0)
+        {
+            availableRows.add(currentRow.toString());
+        }
+        return availableRows;
+    }
+
+    /**
+     * Hands the available seats of the performance with the specified ID to the visitor one at a time, in row order.
+     * Unlike seatsAvailable, no strings or other objects are created per seat, and the visitor can stop early.
+     *
+     * @param performanceID The ID for the performance to determine the available seats for.
+     * @param visitor       The callback to receive the seats. It can stop the visit early by returning false.
+     * @return False if there is no performance with the specified ID, true otherwise.
+     */
+    public boolean visitAvailableSeats(String performanceID, SeatVisitor visitor)
+    {
+        Performance targetPerformance = findPerformance(performanceID);
+        if (targetPerformance == null)
+        {
+            return false;
+        }
+
+        targetPerformance.visitAvailableSeats(visitor);
+        return true;
+    }
+
+    /**
+     * Hands the available seats of the performance with the specified ID to the visitor as runs of adjacent seats,
+     * in row order. No objects are created per run, and the visitor can stop early.
+     *
+     * @param performanceID The ID for the performance to determine the available seats for.
+     * @param visitor       The callback to receive the runs. It can stop the visit early by returning false.
+     * @return False if there is no performance with the specified ID, true otherwise.
+     */
+    public boolean visitAvailableRanges(String performanceID, SeatRangeVisitor visitor)
+    {
+        Performance targetPerformance = findPerformance(performanceID);
+        if (targetPerformance == null)
+        {
+            return false;
+        }
+
+        targetPerformance.visitAvailableRanges(visitor);
+        return true;
+    }
+
     /**
      * Request the server to supply a list reporting the sales for the act with the specified ID.
      * <p>The request fails if there is no act with the specified ID.
@@ -516,13 +1284,232 @@ public class TBSServerImpl implements TBSServer
         }
         else
         {
-            UniqueItems<Performance> actPerformances = targetAct.getPerformances();
-            for (Performance currentPerformance : actPerformances)
+            //cached by the act, and only rebuilt after something has changed
+            salesReport = targetAct.getSalesReport();
+        }
+        return salesReport;
+    }
+
+    /**
+     * Request a list of the performances that start within a time range, in order of start time. Performances that
+     * start at the same time are in order of performance ID.
+     * <p>If there is a problem with the times (wrong format) or the theatre ID (no such theatre exists), then the
+     * request fails.
+     *
+     * @param fromTimeStr The start of the range, inclusive, in the ISO8601 format yyyy-mm-ddThh:mm.
+     * @param toTimeStr   The end of the range, inclusive, in the ISO8601 format yyyy-mm-ddThh:mm.
+     * @param theatreID   The ID of the theatre to list performances for, or null or empty for every theatre.
+     * @param offset      The number of matching performances to skip, for paging.
+     * @param limit       The greatest number of performances to list.
+     * @return A list of strings, one per performance. The format of the string is:<br>
+     * &lt;performanceID&gt; "\t" &lt;start time&gt; "\t" &lt;theatre ID&gt;
+     * <p>If the request fails, then the only entry in the list will be a message explaining what went wrong,
+     * beginning with ERROR.
+     */
+    @Override
+    public List<String> performancesBetween(String fromTimeStr, String toTimeStr, String theatreID, int offset,
+                                            int limit)
+    {
+        List<String> listing = new ArrayList<String>();
+        long fromMinute = StartTime.parse(fromTimeStr);
+        long toMinute = StartTime.parse(toTimeStr);
+        if (fromMinute == StartTime.INVALID || toMinute == StartTime.INVALID)
+        {
+            listing.add(ResponseMessages.TIME_FORMAT_ERR_MSG.getDescription());
+            return listing;
+        }
+
+        PerformanceSchedule targetSchedule = schedule;
+        if (theatreID != null && !theatreID.isEmpty())
+        {
+            Theatre targetTheatre = theatres.findByID(theatreID);
+            if (targetTheatre == null)
             {
-                salesReport.add(currentPerformance.generateSalesReport());
+                listing.add(ResponseMessages.THEATRE_NOT_FOUND_ERR_MSG.getDescription());
+                return listing;
             }
+            targetSchedule = targetTheatre.getSchedule();
+        }
+
+        for (Performance performance : targetSchedule.between(fromMinute, toMinute, Math.max(offset, 0), limit))
+        {
+            listing.add(performance.getID() + "\t" + performance.getStartTime() + "\t"
+                    + performance.getTheatre().getID());
+        }
+        return listing;
+    }
+
+    /**
+     * Request a list of the times on one day when the theatre with the specified ID has no performance on. A
+     * performance takes up the theatre from its start time until its start time plus the duration of its act.
+     * <p>If there is a problem with the theatre ID (no such theatre exists) or the day (wrong format), then the
+     * request fails.
+     *
+     * @param theatreID The ID of the theatre.
+     * @param dayStr    The day, in the ISO8601 format yyyy-mm-dd.
+     * @return A list of strings in time order, one per free slot. The format of the string is:<br>
+     * &lt;start time&gt; "\t" &lt;end time&gt;<br>
+     * with both times in the format yyyy-mm-ddThh:mm. The start time is inclusive and the end time exclusive, so a
+     * slot that lasts until midnight ends at 00:00 on the following day.
+     * <p>If the request fails, then the only entry in the list will be a message explaining what went wrong,
+     * beginning with ERROR.
+     */
+    @Override
+    public List<String> freeSlots(String theatreID, String dayStr)
+    {
+        List<String> slots = new ArrayList<String>();
+        Theatre targetTheatre = theatres.findByID(theatreID);
+        if (targetTheatre == null)
+        {
+            slots.add(ResponseMessages.THEATRE_NOT_FOUND_ERR_MSG.getDescription());
+            return slots;
+        }
+
+        long dayStartMinute = StartTime.parseDay(dayStr);
+        if (dayStartMinute == StartTime.INVALID)
+        {
+            slots.add(ResponseMessages.TIME_FORMAT_ERR_MSG.getDescription());
+            return slots;
+        }
+
+        for (long[] slot : targetTheatre.getSchedule().freeSlots(dayStartMinute))
+        {
+            slots.add(StartTime.format(slot[0]) + "\t" + StartTime.format(slot[1]));
+        }
+        return slots;
+    }
+
+    /**
+     * Request the server to supply the sales totals for every theatre. The totals are kept up to date as tickets are
+     * issued, so the cost of this request depends only on the number of theatres.
+     *
+     * @return A list of strings in order of theatre ID, one per theatre. The format of the string is:<br>
+     * &lt;theatre ID&gt; "\t" &lt;number of tickets sold&gt; "\t" &lt;total sales receipts&gt;
+     */
+    @Override
+    public List<String> revenueByTheatre()
+    {
+        List<String> report = new ArrayList<String>();
+        for (Theatre theatre : theatres)
+        {
+            report.add(formatRevenue(theatre.getID(), theatre.getSales()));
+        }
+        return report;
+    }
+
+    /**
+     * Request the server to supply the sales totals for every artist, across all of their acts. The totals are kept
+     * up to date as tickets are issued, so the cost of this request depends only on the number of artists.
+     *
+     * @return A list of strings in order of artist ID, one per artist. The format of the string is:<br>
+     * &lt;artist ID&gt; "\t" &lt;number of tickets sold&gt; "\t" &lt;total sales receipts&gt;
+     */
+    @Override
+    public List<String> revenueByArtist()
+    {
+        List<String> report = new ArrayList<String>();
+        for (Artist artist : artists)
+        {
+            report.add(formatRevenue(artist.getID(), artist.getSales()));
+        }
+        return report;
+    }
+
+    /**
+     * Request the server to supply the sales totals for every day that has a performance scheduled, grouped by the
+     * day the performance starts on. The totals are kept up to date as tickets are issued, so the cost of this
+     * request depends only on the number of days.
+     *
+     * @return A list of strings in date order, one per day. The format of the string is:<br>
+     * &lt;date yyyy-mm-dd&gt; "\t" &lt;number of tickets sold&gt; "\t" &lt;total sales receipts&gt;
+     */
+    @Override
+    public List<String> revenueByDay()
+    {
+        List<String> report = new ArrayList<String>();
+        for (Map.Entry<String, SalesTally> day : dailySales.entrySet())
+        {
+            report.add(formatRevenue(day.getKey(), day.getValue()));
+        }
+        return report;
+    }
+
+    /**
+     * @param group The name of the group the totals belong to.
+     * @param sales The totals.
+     * @return A line of a revenue report.
+     */
+    private String formatRevenue(String group, SalesTally sales)
+    {
+        return group + "\t" + sales.getTicketsSold() + "\t" + "$" + sales.getTotalReceipts();
+    }
+
+    /**
+     * Rebuilds the server's state from its snapshot and journal. Everything in them was accepted by the server, so the
+     * checks made at the time are not repeated, and each item is given the ID it had before.
+     */
+    private class Replay implements SnapshotReplayer
+    {
+        @Override
+        public void replayTheatre(String ID, int numRows, int floorArea)
+        {
+            theatres.add(new Theatre(ID, numRows, floorArea));
+        }
+
+        @Override
+        public void replayArtist(String ID, String name)
+        {
+            publishArtist(new Artist(name, ItemKey.parse(ID)));
+        }
+
+        @Override
+        public void replayAct(String ID, String title, String artistID, int minutesDuration)
+        {
+            Artist artist = find(artists::findByID, artistID);
+            Act act = new Act(artist, ItemKey.parse(ID), title, minutesDuration);
+            acts.add(act);
+            artist.addAct(act);
+        }
+
+        @Override
+        public void replayPerformance(String ID, String actID, String theatreID, String startTime,
+                                      String premiumPrice, String cheapPrice)
+        {
+            Theatre theatre = find(theatres::findByID, theatreID);
+            Performance performance = createPerformance(find(acts::findByID, actID), theatre, ItemKey.parse(ID),
+                    startTime, StartTime.parse(startTime), premiumPrice, cheapPrice);
+            theatre.getSchedule().add(performance);
+            publishPerformance(performance);
+        }
+
+        @Override
+        public void replayTickets(String performanceID, int[] seatIndexes)
+        {
+            if (find(TBSServerImpl.this::findPerformance, performanceID).issueTickets(seatIndexes) == null)
+            {
+                throw new IllegalStateException("A seat of performance " + performanceID + " was sold twice.");
+            }
+        }
+
+        @Override
+        public void replaySeats(String performanceID, LongBuffer occupancyWords, int ticketsSold, long totalReceipts)
+        {
+            find(TBSServerImpl.this::findPerformance, performanceID).restoreSeats(occupancyWords, ticketsSold,
+                    totalReceipts);
+        }
+
+        /**
+         * @return The item with the given ID, which an earlier record must have added.
+         */
+        private <T extends UniqueItem> T find(Function<String, T> lookup, String ID)
+        {
+            T item = lookup.apply(ID);
+            if (item == null)
+            {
+                throw new IllegalStateException("No item with ID " + ID + " has been replayed.");
+            }
+            return item;
         }
-        return salesReport;
     }
 
     /**
@@ -559,7 +1546,7 @@ public class TBSServerImpl implements TBSServer
                 List<String> perfIDs = act.getPerformanceIDs();
                 for (String perfID : perfIDs)
                 {
-                    Performance perf = performances.findByID(perfID);
+                    Performance perf = findPerformance(perfID);
                     System.out.println("\t\t" + perf);
                 }
             }
@@ -7,8 +7,9 @@ public class Theatre extends UniqueItem
 {
     private final int NUM_ROWS;
     private final int FLOOR_AREA; //sq metres
-
-    private UniqueItems<Act> actList = new UniqueItems<Act>();
+    private final SeatingLayout LAYOUT; //shared by every performance in this theatre
+    private final SalesTally SALES = new SalesTally(); //across every performance held in this theatre
+    private final PerformanceSchedule SCHEDULE = new PerformanceSchedule();
 
     /**
      * Creates and returns a theatre object.
@@ -23,6 +24,7 @@ public class Theatre extends UniqueItem
         super(ID);
         this.NUM_ROWS = numRows;
         this.FLOOR_AREA = floorArea;
+        this.LAYOUT = new SeatingLayout(numRows);
     }
 
     /**
@@ -45,4 +47,36 @@ public class Theatre extends UniqueItem
         return NUM_ROWS;
     }
 
+    /**
+     * @return The area of theatre in square metres.
+     */
+    public int getFloorArea()
+    {
+        return FLOOR_AREA;
+    }
+
+    /**
+     * @return The seating layout of this theatre.
+     */
+    public SeatingLayout getLayout()
+    {
+        return LAYOUT;
+    }
+
+    /**
+     * @return The performances held in this theatre, indexed by start time.
+     */
+    public PerformanceSchedule getSchedule()
+    {
+        return SCHEDULE;
+    }
+
+    /**
+     * @return The running sales totals across every performance held in this theatre.
+     */
+    public SalesTally getSales()
+    {
+        return SALES;
+    }
+
 }
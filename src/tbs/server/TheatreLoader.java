@@ -0,0 +1,237 @@
+package tbs.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * This class reads theatre details from a file. The file is streamed through a fixed size buffer and each line is
+ * parsed straight from its bytes, so loading takes time linear in the size of the file and memory linear in the
+ * number of theatres, however long the file is.
+ * <p>
+ * The file format is, each line consists of:
+ * "THEATRE" "\t" theatre ID "\t" seating dimension "\t" floor area
+ * <p>
+ * Fields may be separated by any mix of spaces and tabs, and anything after the floor area is ignored.
+ */
+public class TheatreLoader
+{
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[] THEATRE_NAME_MARKER = "THEATRE".getBytes(StandardCharsets.US_ASCII);
+
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private int lineNumber;
+    private int position; //where parsing has got to in the current line
+    private int lineEnd;
+
+    /**
+     * Reads every theatre in a file. Either the whole file is valid and every theatre is returned, or an exception
+     * is thrown and nothing is returned.
+     *
+     * @param path The file to read.
+     * @param existingIDs Tells whether a theatre ID is already taken by a theatre loaded earlier.
+     * @return The theatres in the file, in file order. Every line holds one theatre, so the theatre at index i is
+     * from line i + 1.
+     * @throws IOException If the file cannot be read.
+     * @throws TheatreParsingException If a line is in the wrong format, or a theatre ID appears twice or is already
+     * taken. The message says which line is at fault.
+     */
+    public List<Theatre> load(Path path, Predicate<String> existingIDs) throws IOException, TheatreParsingException
+    {
+        List<Theatre> loaded = new ArrayList<Theatre>();
+        Set<String> loadedIDs = new HashSet<String>();
+        lineNumber = 0;
+        buffer.clear();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            boolean endOfFile = false;
+            while (!endOfFile)
+            {
+                endOfFile = channel.read(buffer) < 0;
+                buffer.flip();
+
+                //parse every complete line in the buffer, and at the end of the file whatever is left over
+                int lineStart = buffer.position();
+                for (int i = lineStart; i < buffer.limit(); i++)
+                {
+                    if (buffer.get(i) == '\n')
+                    {
+                        loaded.add(parseLine(lineStart, i, loadedIDs, existingIDs));
+                        lineStart = i + 1;
+                    }
+                }
+                if (endOfFile && lineStart < buffer.limit())
+                {
+                    loaded.add(parseLine(lineStart, buffer.limit(), loadedIDs, existingIDs));
+                    lineStart = buffer.limit();
+                }
+
+                buffer.position(lineStart);
+                buffer.compact();
+                if (!buffer.hasRemaining())
+                {
+                    //a single line fills the whole buffer, so make room for the rest of it
+                    ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                    buffer.flip();
+                    larger.put(buffer);
+                    buffer = larger;
+                }
+            }
+        }
+
+        return loaded;
+    }
+
+    /**
+     * Parses the line between start (inclusive) and end (exclusive) of the buffer.
+     */
+    private Theatre parseLine(int start, int end, Set<String> loadedIDs, Predicate<String> existingIDs)
+    {
+        lineNumber++;
+        position = start;
+        lineEnd = end;
+
+        if (!nextFieldMatches(THEATRE_NAME_MARKER))  //Check for theatre marker
+        {
+            throw new TheatreParsingException(ResponseMessages.FILE_FORMAT_ERR_MSG, lineNumber);
+        }
+
+        String code = nextField();
+        if (code == null) //Check for code marker
+        {
+            throw new TheatreParsingException(ResponseMessages.FILE_FORMAT_ERR_MSG, lineNumber);
+        }
+
+        long seatingDimension = nextInt();
+        long floorSpace = nextInt();
+        if (seatingDimension == Long.MIN_VALUE || floorSpace == Long.MIN_VALUE) //Check for seating dimension and area
+        {
+            throw new TheatreParsingException(ResponseMessages.FILE_FORMAT_ERR_MSG, lineNumber);
+        }
+
+        if (!loadedIDs.add(code) || existingIDs.test(code))
+        {
+            throw new TheatreParsingException(ResponseMessages.DUPLICATE_CODE_ERR_MSG, lineNumber);
+        }
+
+        return new Theatre(code, (int) seatingDimension, (int) floorSpace);
+    }
+
+    /**
+     * Moves past any spaces, tabs and carriage returns.
+     * @return True if there is another field on the line.
+     */
+    private boolean skipSeparators()
+    {
+        while (position < lineEnd && isSeparator(buffer.get(position)))
+        {
+            position++;
+        }
+        return position < lineEnd;
+    }
+
+    /**
+     * @return The index just past the end of the field starting at the current position.
+     */
+    private int fieldEnd()
+    {
+        int end = position;
+        while (end < lineEnd && !isSeparator(buffer.get(end)))
+        {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Reads the next field if it is exactly the expected bytes.
+     */
+    private boolean nextFieldMatches(byte[] expected)
+    {
+        if (!skipSeparators() || fieldEnd() - position != expected.length)
+        {
+            return false;
+        }
+
+        for (byte expectedByte : expected)
+        {
+            if (buffer.get(position++) != expectedByte)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The next field as a string, or null if there are no more fields on the line.
+     */
+    private String nextField()
+    {
+        if (!skipSeparators())
+        {
+            return null;
+        }
+
+        int end = fieldEnd();
+        String field = new String(buffer.array(), buffer.arrayOffset() + position, end - position,
+                StandardCharsets.UTF_8);
+        position = end;
+        return field;
+    }
+
+    /**
+     * @return The next field as an integer, or Long.MIN_VALUE if it is missing or is not an integer.
+     */
+    private long nextInt()
+    {
+        if (!skipSeparators())
+        {
+            return Long.MIN_VALUE;
+        }
+
+        int end = fieldEnd();
+        boolean negative = buffer.get(position) == '-';
+        if (negative || buffer.get(position) == '+')
+        {
+            position++;
+        }
+        if (position == end)
+        {
+            return Long.MIN_VALUE;
+        }
+
+        long value = 0;
+        for (; position < end; position++)
+        {
+            byte digit = buffer.get(position);
+            if (digit < '0' || digit > '9')
+            {
+                return Long.MIN_VALUE;
+            }
+
+            value = value * 10 + (digit - '0');
+            if (value > Integer.MAX_VALUE + 1L)
+            {
+                return Long.MIN_VALUE;
+            }
+        }
+
+        value = negative ? -value : value;
+        return value > Integer.MAX_VALUE ? Long.MIN_VALUE : value;
+    }
+
+    private static boolean isSeparator(byte b)
+    {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+}
@@ -0,0 +1,51 @@
+package tbs.server;
+
+/**
+ * An exception that occurs when reading a file.
+ */
+public class TheatreParsingException extends RuntimeException
+{
+    private final ResponseMessages reason;
+    private final int lineNumber;
+
+    /**
+     * Create and returns a TheatreParsingException .
+     * @param reason What was wrong with the file.
+     * @param lineNumber The line of the file the problem was found on.
+     */
+    public TheatreParsingException(ResponseMessages reason, int lineNumber)
+    {
+        super(reason.atLine(lineNumber));
+        this.reason = reason;
+        this.lineNumber = lineNumber;
+    }
+
+    /**
+     * Create and returns a TheatreParsingException for one of several files.
+     * @param reason What was wrong with the file.
+     * @param fileName The name of the file the problem was found in.
+     * @param lineNumber The line of the file the problem was found on.
+     */
+    public TheatreParsingException(ResponseMessages reason, String fileName, int lineNumber)
+    {
+        super(reason.atLine(fileName, lineNumber));
+        this.reason = reason;
+        this.lineNumber = lineNumber;
+    }
+
+    /**
+     * @return What was wrong with the file.
+     */
+    public ResponseMessages getReason()
+    {
+        return reason;
+    }
+
+    /**
+     * @return The line of the file the problem was found on.
+     */
+    public int getLineNumber()
+    {
+        return lineNumber;
+    }
+}
@@ -5,18 +5,33 @@ package tbs.server;
  * All UniqueItem objects have an ID that is used to distinguish
  * and compare them. A UniqueItem object should never be directly
  * created, therefore it is abstract.
+ * <p>
+ * Items named by the outside world (theatres) keep their ID as a string. Items the server numbers itself keep a
+ * primitive key packed by ItemKey, and their ID string is only made when it is asked for.
  */
 public abstract class UniqueItem implements Comparable<UniqueItem>
 {
-    private final String ID;
+    private final String name; //null for numbered items
+    private final long key; //ItemKey.INVALID for named items
 
     /**
-     * Creates and returns a UniqueItem.
+     * Creates and returns a UniqueItem named by the outside world.
      * @param id A unique string ID.
      */
     public UniqueItem(String id)
     {
-        this.ID = id;
+        this.name = id;
+        this.key = ItemKey.INVALID;
+    }
+
+    /**
+     * Creates and returns a UniqueItem numbered by the server.
+     * @param key A unique key, packed by ItemKey.
+     */
+    public UniqueItem(long key)
+    {
+        this.name = null;
+        this.key = key;
     }
 
     /**
@@ -25,7 +40,15 @@ public abstract class UniqueItem implements Comparable<UniqueItem>
      */
     public String getID()
     {
-        return ID;
+        return name != null ? name : ItemKey.format(key);
+    }
+
+    /**
+     * @return The item's key, or ItemKey.INVALID if the item is named by the outside world.
+     */
+    public long getKey()
+    {
+        return key;
     }
 
     /**
@@ -41,7 +64,16 @@ public abstract class UniqueItem implements Comparable<UniqueItem>
     public boolean equals(Object obj)
     {
         UniqueItem other = (UniqueItem) obj;
-        return ID.equals(other.getID());
+        return name == null ? other.name == null && key == other.key : name.equals(other.name);
+    }
+
+    /**
+     * @return A hash code consistent with equals.
+     */
+    @Override
+    public int hashCode()
+    {
+        return name == null ? Long.hashCode(key) : name.hashCode();
     }
 
     /**
@@ -59,6 +91,10 @@ public abstract class UniqueItem implements Comparable<UniqueItem>
     @Override
     public int compareTo(UniqueItem other)
     {
+        if (name == null && other.name == null)
+        {
+            return ItemKey.compare(key, other.key);
+        }
         return getID().compareTo(other.getID());
     }
 }
@@ -1,92 +1,80 @@
 package tbs.server;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * This class represents a collection of unique items.
+ * This class represents a collection of unique items. The collection is safe to use from several threads at once, and
+ * reading from it never blocks.
  * @param <E> An object with the UniqueItem type.
  */
 public class UniqueItems<E extends UniqueItem> implements Iterable<E>
 {
-    private Set<E> items = new TreeSet<E>(); //using a tree set as it keeps items in order when using comparable
+    private Set<E> items = new ConcurrentSkipListSet<E>(); //using a skip list set as it keeps items in order when using comparable
+    private Map<String, E> itemsByID = new ConcurrentHashMap<String, E>(); //hash index over the same items for constant time lookups
+    private final AtomicLong version = new AtomicLong(0); //bumped by every addition, once the item is indexed
+    private volatile VersionedValue<List<String>> cachedIDs;
 
     /**
-     * Numeric IDs are the segment (the last segment) of IDs made of digits. This method gets all the numeric
-     * IDs.
-     * @return A list of the numeric part of IDs.
+     * Get a list of sorted IDs for each element in the collection. The list is cached, and is only rebuilt after an
+     * element has been added, so reading it again costs nothing.
+     * @return A read-only List of Strings representing unique IDs.
      */
-    private List<Integer> getNumericIDs()
+    public List<String> getIDs()
     {
-        List<Integer> numericIDs = new ArrayList<Integer>();
+        long currentVersion = version.get();
+        VersionedValue<List<String>> cached = cachedIDs;
+        if (cached != null && cached.isCurrent(currentVersion))
+        {
+            return cached.getValue();
+        }
 
+        //the set already iterates in order of ID, so the IDs need no sorting
+        List<String> IDs = new ArrayList<String>();
         for (E currentUniqueItem : items)
         {
-            String IDSections[] = currentUniqueItem.getID().split("-");
-            Integer currentIDFrag = Integer.parseInt(IDSections[IDSections.length - 1]);
-            numericIDs.add(currentIDFrag);
+            IDs.add(currentUniqueItem.getID());
         }
 
-        Collections.sort(numericIDs);
-        return numericIDs;
+        List<String> readOnlyIDs = Collections.unmodifiableList(IDs);
+        cachedIDs = new VersionedValue<List<String>>(currentVersion, readOnlyIDs);
+        return readOnlyIDs;
     }
 
-
     /**
-     * Numeric IDs are the segment (the last segment) of IDs made of digits. Child collections are sub-groupings of a
-     * particular type of group. For example, artists store a reference to acts they put on. A group of artists
-     * may be a collection itself and their acts are a sub-grouping or child collection. This method returns all the
-     * numeric IDs in a given child collection.
-     *
-     * @param prefix The prefix to the ID that determines the child collection.
-     * @return
+     * @return A number that changes whenever an element is added, for caching values derived from the collection.
      */
-    private List<String> getNumericChildCollectionIDs(String prefix)
+    public long getVersion()
     {
-        List<Integer> numericIDs = new ArrayList<Integer>();
-
-        for (E currentUniqueItem : items)
-        {
-            String IDSections[] = currentUniqueItem.getID().split("-");
-            Integer currentIDFrag = Integer.parseInt(IDSections[IDSections.length - 1]);
-            numericIDs.add(currentIDFrag);
-        }
-
-        Collections.sort(numericIDs);
-        List<String> stringIDs = new ArrayList<String>();
-        for (int IDFrag : numericIDs)
-        {
-            String fullID = prefix + "-" + IDFrag;
-            stringIDs.add(fullID);
-        }
-
-        return stringIDs;
+        return version.get();
     }
 
     /**
-     * Get a list of sorted IDs for each element in the collection.
-     * @return A List of Strings representing unique IDs.
+     * Add an element to the collection.
+     * @param uniqueObj Some UniqueItem.
+     * @return True if the element was added, false if the collection already held an element with the same ID.
      */
-    public List<String> getIDs()
+    public boolean add(E uniqueObj)
     {
-        List<String> IDs = new ArrayList<String>();
-
-        for (E currentUniqueItem : items)
+        //only index the item if the ordered set accepted it, so both views always agree
+        if (!items.add(uniqueObj))
         {
-            String currentID = currentUniqueItem.getID();
-            IDs.add(currentID);
+            return false;
         }
-
-        Collections.sort(IDs);
-        return IDs;
+        index(uniqueObj);
+        version.incrementAndGet();
+        return true;
     }
 
     /**
-     * Add an element to the collection.
-     * @param uniqueObj Some UniqueItem.
+     * Makes a newly added element findable by its ID.
+     * @param uniqueObj The element, which is already in the ordered set.
      */
-    public void add(E uniqueObj)
+    protected void index(E uniqueObj)
     {
-        items.add(uniqueObj);
+        itemsByID.put(uniqueObj.getID(), uniqueObj);
     }
 
     /**
@@ -97,77 +85,23 @@ public class UniqueItems<E extends UniqueItem> implements Iterable<E>
      */
     public E findByID(String ID)
     {
-
-        for (E currentUniqueItem : items)
-        {
-            if(currentUniqueItem.getID().equals(ID))
-            {
-                return currentUniqueItem;
-            }
-        }
-
-        return null;
+        return itemsByID.get(ID);
     }
 
     /**
-     * @return An iterator over elements of type UniqueItem.
+     * @return An iterator over elements of type UniqueItem, in order of their IDs.
      */
     @Override
     public Iterator<E> iterator()
     {
-        return items.iterator();
+        return Collections.unmodifiableSet(items).iterator();
     }
 
     /**
-     * @return A set representation of this collection.
+     * @return A read-only set representation of this collection, in order of the items' IDs.
      */
     public Set<E> toSet()
     {
-        return items;
+        return Collections.unmodifiableSet(items);
     }
-
-    /**
-     * Generates a new ID.
-     *
-     * @param isChildCollection A boolean representing whether or not this ID is part of a child collection.
-     * @param parentPrefix The prefix to the ID. Ignored if isChildCollection is set to false.
-     * @return
-     */
-    public String generateID(boolean isChildCollection, String parentPrefix)
-    {
-        String newID;
-        if (!isChildCollection)
-        {
-            List<Integer> IDList = this.getNumericIDs();
-            if (IDList.isEmpty())
-            {
-                newID = "0";
-            }
-            else
-            {
-                int prevID = IDList.get(IDList.size() - 1);
-                newID = String.valueOf(prevID + 1);
-            }
-        }
-        else
-        {
-            List<String> IDList = this.getNumericChildCollectionIDs(parentPrefix);
-
-            if (IDList.isEmpty())
-            {
-                newID = parentPrefix + "-" + "0";
-            }
-            else
-            {
-                String prevID = IDList.get(IDList.size() - 1);
-                String[] IDSections = prevID.split("-");
-                int numericSubID = Integer.parseInt(IDSections[IDSections.length - 1]) + 1;
-                newID = parentPrefix + "-" + String.valueOf(numericSubID);
-            }
-        }
-
-
-        return newID;
-    }
-
 }
@@ -0,0 +1,41 @@
+package tbs.server;
+
+/**
+ * An immutable pairing of a value with the version of the state it was computed from. It is used to cache values
+ * that are expensive to rebuild, such as report rows: the cached value can be reused for as long as the state is
+ * still at the same version.
+ * @param <T> The type of the cached value.
+ */
+public class VersionedValue<T>
+{
+    private final long version;
+    private final T value;
+
+    /**
+     * Creates and returns a VersionedValue object.
+     * @param version The version of the state the value was computed from.
+     * @param value The computed value.
+     */
+    public VersionedValue(long version, T value)
+    {
+        this.version = version;
+        this.value = value;
+    }
+
+    /**
+     * @param currentVersion The current version of the state.
+     * @return True if the value was computed from the given version of the state.
+     */
+    public boolean isCurrent(long currentVersion)
+    {
+        return version == currentVersion;
+    }
+
+    /**
+     * @return The cached value.
+     */
+    public T getValue()
+    {
+        return value;
+    }
+}